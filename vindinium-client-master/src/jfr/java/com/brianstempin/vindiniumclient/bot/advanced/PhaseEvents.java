@@ -0,0 +1,122 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Flight Recorder events of TurnEvents. Built by the jfr profile on JDK 11
+ * and later, and only loaded when the JVM has Flight Recorder. TurnEvents
+ * loads it by name, so the rest of the client builds without it.
+ */
+final class PhaseEvents implements TurnEvents.Recorder {
+
+    PhaseEvents() {
+    }
+
+    @Override
+    public TurnEvents.Span begin(TurnEvents.Phase phase) {
+        PhaseEvent event;
+        switch (phase) {
+            case ROUND_TRIP:
+                event = new RoundTripEvent();
+                break;
+            case PARSE:
+                event = new ParseEvent();
+                break;
+            case STATE_UPDATE:
+                event = new StateUpdateEvent();
+                break;
+            case THREAT_COSTS:
+                event = new ThreatCostsEvent();
+                break;
+            case SEARCH:
+                event = new SearchEvent();
+                break;
+            case DECISION_MAKER:
+                event = new DecisionMakerEvent();
+                break;
+            default:
+                event = new MoveEvent();
+        }
+        event.begin();
+        return event;
+    }
+
+    @Category({"Vindinium", "Turn"})
+    @StackTrace(false)
+    abstract static class PhaseEvent extends Event implements TurnEvents.Span {
+
+        @Label("Game Id")
+        String gameId;
+
+        @Label("Turn")
+        int turn;
+
+        @Label("Board Size")
+        int boardSize;
+
+        @Label("Decision Maker")
+        String decisionMaker;
+
+        @Override
+        public void record() {
+            if (shouldCommit()) {
+                TurnEvents.Turn t = TurnEvents.currentTurn();
+                if (!t.recording) {
+                    return;
+                }
+                gameId = t.gameId;
+                turn = t.turn;
+                boardSize = t.boardSize;
+                decisionMaker = t.decisionMaker;
+                commit();
+            }
+        }
+    }
+
+    @Name("vindinium.RoundTrip")
+    @Label("Round Trip")
+    @Description("The move request, until the response starts")
+    static final class RoundTripEvent extends PhaseEvent {
+    }
+
+    @Name("vindinium.Parse")
+    @Label("Parse")
+    @Description("Reading the game state from the response")
+    static final class ParseEvent extends PhaseEvent {
+    }
+
+    @Name("vindinium.StateUpdate")
+    @Label("State Update")
+    @Description("Building the AdvancedGameState of the turn")
+    static final class StateUpdateEvent extends PhaseEvent {
+    }
+
+    @Name("vindinium.ThreatCosts")
+    @Label("Threat Costs")
+    @Description("Movement costs around enemy heroes")
+    static final class ThreatCostsEvent extends PhaseEvent {
+    }
+
+    @Name("vindinium.Search")
+    @Label("Search")
+    @Description("Building the shortest path tree")
+    static final class SearchEvent extends PhaseEvent {
+    }
+
+    @Name("vindinium.DecisionMaker")
+    @Label("Decision Maker")
+    @Description("wantsToAct and takeAction of one decision maker")
+    static final class DecisionMakerEvent extends PhaseEvent {
+    }
+
+    @Name("vindinium.Move")
+    @Label("Move")
+    @Description("The whole move of the bot")
+    static final class MoveEvent extends PhaseEvent {
+    }
+}
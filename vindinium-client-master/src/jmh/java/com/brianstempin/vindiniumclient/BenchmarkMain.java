@@ -0,0 +1,45 @@
+package com.brianstempin.vindiniumclient;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of the bots. Takes the options of the JMH command
+ * line, for example a regular expression of the benchmarks to run:
+ * <pre>
+ * java -jar target/benchmarks.jar MyBotBenchmark -p board=generated-28
+ * </pre>
+ * Unless other profilers are given, the GC profiler reports the bytes
+ * allocated per operation next to the throughput. The forked JVMs log
+ * nothing and write no replays.
+ */
+public class BenchmarkMain {
+
+    private static final String[] JVM_ARGS = {
+        "-Dlog4j.configurationFile=log4j2-benchmarks.xml",
+        "-Dvindinium.replays="};
+
+    public static void main(String args[]) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getJvmArgsAppend().hasValue()) {
+            options.jvmArgsAppend(JVM_ARGS);
+        }
+        Runner runner = new Runner(options.build());
+        if (commandLine.shouldList()) {
+            runner.list();
+        } else {
+            runner.run();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.server.BenchmarkStates;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the AdvancedGameState of the first turn, and of a later turn from
+ * the one before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark {
+
+    @Param({BenchmarkStates.FIXTURE, BenchmarkStates.FIXTURE_2, BenchmarkStates.GENERATED_18,
+        BenchmarkStates.GENERATED_28})
+    public String board;
+
+    private GameState state;
+    private AdvancedGameState previous;
+    private byte[] json;
+    private GameStateReader reader;
+
+    @Setup
+    public void setup() {
+        GameState[] states = BenchmarkStates.consecutive(board);
+        previous = new AdvancedGameState(states[0]);
+        state = states[1];
+        json = BenchmarkStates.toJson(state);
+        reader = new GameStateReader();
+    }
+
+    /**
+     * The first turn. The terrain is in the cache after the first call, as
+     * it is for every game on a board played before.
+     */
+    @Benchmark
+    public AdvancedGameState construct() {
+        return new AdvancedGameState(state);
+    }
+
+    /**
+     * A later turn from the GameState DTO.
+     */
+    @Benchmark
+    public AdvancedGameState update() {
+        return new AdvancedGameState(previous, state);
+    }
+
+    /**
+     * A later turn as AdvancedBotRunner plays it: reading the response, then
+     * updating from the reader.
+     */
+    @Benchmark
+    public AdvancedGameState readAndUpdate() throws IOException {
+        reader.read(new ByteArrayInputStream(json));
+        return new AdvancedGameState(previous, reader);
+    }
+}
@@ -0,0 +1,56 @@
+package com.brianstempin.vindiniumclient.bot.simple;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.server.BenchmarkStates;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A move of MurderBot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MurderBotBenchmark {
+
+    /**
+     * Kept here so its level is not lost if it is collected.
+     */
+    private static final Logger murderBotLogger = Logger.getLogger("murderbot");
+
+    @Param({BenchmarkStates.FIXTURE, BenchmarkStates.FIXTURE_2, BenchmarkStates.GENERATED_18,
+        BenchmarkStates.GENERATED_28})
+    public String board;
+
+    private GameState state;
+    private MurderBot bot;
+
+    @Setup
+    public void setup() {
+        murderBotLogger.setLevel(Level.OFF);
+        state = BenchmarkStates.consecutive(board)[1];
+        bot = new MurderBot();
+        bot.setup();
+    }
+
+    @Benchmark
+    public BotMove move() {
+        return bot.move(state);
+    }
+}
@@ -0,0 +1,150 @@
+package com.brianstempin.vindiniumclient.server;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import mybot.BotParameters;
+import mybot.MyBot;
+
+/**
+ * Game states the benchmarks play on, named by the board parameter of the
+ * benchmarks.
+ * <p>
+ * FIXTURE and FIXTURE_2 are the states the tests use, one turn of an 18 by 18
+ * game, the same but for the life of one hero. GENERATED_18 and GENERATED_28
+ * are games of LocalServer rules on generated boards between four MyBots,
+ * seen by hero 1, or by each hero through heroes(). Every state is what the client received, so it can be given
+ * to the bots as such.
+ */
+public final class BenchmarkStates {
+
+    public static final String FIXTURE = "known-good-game-state.json";
+    public static final String FIXTURE_2 = "known-good-game-state-2.json";
+    public static final String GENERATED_18 = "generated-18";
+    public static final String GENERATED_28 = "generated-28";
+
+    private static final String GENERATED = "generated-";
+    private static final long SEED = 42;
+    private static final Gson gson = new Gson();
+    private static final Map<String, List<List<GameState>>> games = new HashMap<>();
+
+    private BenchmarkStates() {
+    }
+
+    /**
+     * @param board Name of the board.
+     * @return The states of the client, turn by turn. Two for the fixtures,
+     * the other fixture first.
+     */
+    public static List<GameState> game(String board) {
+        return heroes(board).get(0);
+    }
+
+    /**
+     * @param board Name of the board.
+     * @return The states of every hero of a generated game, turn by turn,
+     * hero 1 first. Only the states of game for the fixtures.
+     */
+    public static synchronized List<List<GameState>> heroes(String board) {
+        List<List<GameState>> views = games.get(board);
+        if (views == null) {
+            if (board.startsWith(GENERATED)) {
+                views = play(Integer.parseInt(board.substring(GENERATED.length())));
+            } else {
+                views = Collections.singletonList(Collections.unmodifiableList(
+                        Arrays.asList(load(board.equals(FIXTURE) ? FIXTURE_2 : FIXTURE), load(board))));
+            }
+            games.put(board, views);
+        }
+        return views;
+    }
+
+    /**
+     * @param board Name of the board.
+     * @return Two states the client received one after the other, from the
+     * middle of the game.
+     */
+    public static GameState[] consecutive(String board) {
+        List<GameState> states = game(board);
+        int middle = states.size() / 2;
+        return new GameState[]{states.get(middle - 1), states.get(middle)};
+    }
+
+    /**
+     * @return The state as the server would have sent it.
+     */
+    public static byte[] toJson(GameState state) {
+        return gson.toJson(state).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static GameState load(String resource) {
+        InputStream in = BenchmarkStates.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalArgumentException("No board " + resource);
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, GameState.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + resource, e);
+        }
+    }
+
+    /**
+     * @return The states of each hero in a game of four MyBots.
+     */
+    private static List<List<GameState>> play(int size) {
+        Random random = new Random(LocalServer.mix(SEED + size));
+        String[] names = new String[LocalGame.HEROES];
+        Arrays.fill(names, "MyBot");
+        LocalGame game = new LocalGame(GENERATED + size, MapGenerator.generate(size, random),
+                LocalGame.HEROES * LocalServer.DEFAULT_TURNS, random, names);
+        MyBot[] bots = new MyBot[LocalGame.HEROES];
+        AdvancedGameState[] advanced = new AdvancedGameState[LocalGame.HEROES];
+        boolean[] crashed = new boolean[LocalGame.HEROES];
+        for (int i = 0; i < bots.length; i++) {
+            bots[i] = new MyBot(BotParameters.DEFAULTS, false);
+        }
+        List<List<GameState>> views = new ArrayList<>();
+        for (int i = 0; i < LocalGame.HEROES; i++) {
+            views.add(new ArrayList<GameState>());
+        }
+        while (!game.isFinished()) {
+            int hero = game.getCurrentHeroId();
+            GameState state = game.toGameState(hero, null, null, null);
+            views.get(hero - 1).add(state);
+            BotMove move = BotMove.STAY;
+            if (!crashed[hero - 1]) {
+                AdvancedGameState previous = advanced[hero - 1];
+                advanced[hero - 1] = previous == null ? new AdvancedGameState(state)
+                        : new AdvancedGameState(previous, state);
+                try {
+                    move = bots[hero - 1].move(advanced[hero - 1]);
+                } catch (RuntimeException e) {
+                    crashed[hero - 1] = true;
+                    game.crash(hero);
+                }
+            }
+            game.play(move.toString());
+        }
+        for (MyBot bot : bots) {
+            bot.shutdown();
+        }
+        for (int i = 0; i < views.size(); i++) {
+            views.set(i, Collections.unmodifiableList(views.get(i)));
+        }
+        return Collections.unmodifiableList(views);
+    }
+}
@@ -0,0 +1,175 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.server.BenchmarkStates;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * wantsToAct and takeAction of each decision maker, on the turns of a
+ * generated game where it wants to act, seen by any of the heroes. The
+ * fixtures are a single turn, where most of the decision makers don't. If a
+ * decision maker never acts in the game, its wantsToAct is measured on every
+ * turn. The telefrag one needs an enemy on my spawn point and almost no life
+ * left, which the games do not have, so its takeAction is not measured.
+ * <p>
+ * The calls take microseconds, too little to set up each one on its own, so
+ * the setup makes a pathfinder for up to TURNS turns and the calls go through
+ * them in turn. Each has its own scratch with the shortest path tree and its
+ * threat map already built, the time is that of the decision maker's own
+ * searches. PathfinderBenchmark measures the tree and the threat map.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecisionMakerBenchmark {
+
+    /**
+     * Most turns to go through.
+     */
+    static final int TURNS = 64;
+
+    @Param({BenchmarkStates.GENERATED_18, BenchmarkStates.GENERATED_28})
+    public String board;
+
+    /**
+     * Pathfinders of the turns of the game, of every hero.
+     */
+    private List<Pathfinder> pathfinders;
+
+    @Setup
+    public void setup() {
+        pathfinders = new ArrayList<>();
+        for (List<GameState> states : BenchmarkStates.heroes(board)) {
+            AdvancedGameState state = null;
+            for (GameState s : states) {
+                state = state == null ? new AdvancedGameState(s) : new AdvancedGameState(state, s);
+                Pathfinder pathfinder = new Pathfinder(state, new SearchScratch(), BotParameters.DEFAULTS);
+                pathfinder.getClosestMine();
+                pathfinder.getThreatMap();
+                pathfinders.add(pathfinder);
+            }
+        }
+    }
+
+    private static DecisionMaker newDecisionMaker(String name) {
+        switch (name) {
+            case "Combat":
+                return new CombatDecisionMaker();
+            case "InnCamper":
+                return new InnCamperDecisionMaker();
+            case "Telefrag":
+                return new TelefragDecisionmaker();
+            case "Healing":
+                return new HealingDecisionMaker();
+            case "Looting":
+                return new LootingDecisionMaker();
+            default:
+                throw new IllegalArgumentException("No decision maker " + name);
+        }
+    }
+
+    /**
+     * @return Up to TURNS of the pathfinders, spread over the list.
+     */
+    private static List<Pathfinder> spread(List<Pathfinder> pathfinders) {
+        List<Pathfinder> chosen = new ArrayList<>();
+        int count = Math.min(TURNS, pathfinders.size());
+        for (int i = 0; i < count; i++) {
+            chosen.add(pathfinders.get(i * pathfinders.size() / count));
+        }
+        return chosen;
+    }
+
+    /**
+     * The turns where the decision maker wants to act, or every turn if there
+     * are none.
+     */
+    @State(Scope.Thread)
+    public static class Asking {
+
+        @Param({"Combat", "InnCamper", "Telefrag", "Healing", "Looting"})
+        public String decisionMaker;
+
+        DecisionMaker dm;
+        Pathfinder[] pathfinders;
+        int next;
+
+        @Setup
+        public void setup(DecisionMakerBenchmark benchmark) {
+            dm = newDecisionMaker(decisionMaker);
+            List<Pathfinder> acting = new ArrayList<>();
+            for (Pathfinder pathfinder : benchmark.pathfinders) {
+                if (dm.wantsToAct(pathfinder)) {
+                    acting.add(pathfinder);
+                }
+            }
+            pathfinders = spread(acting.isEmpty() ? benchmark.pathfinders : acting).toArray(new Pathfinder[0]);
+        }
+    }
+
+    /**
+     * The turns where the decision maker wants to act, each with a decision
+     * maker that has just said so, as takeAction is called.
+     */
+    @State(Scope.Thread)
+    public static class Decided {
+
+        @Param({"Combat", "InnCamper", "Healing", "Looting"})
+        public String decisionMaker;
+
+        DecisionMaker[] dms;
+        Pathfinder[] pathfinders;
+        int next;
+
+        @Setup
+        public void setup(DecisionMakerBenchmark benchmark) {
+            List<Pathfinder> acting = new ArrayList<>();
+            for (Pathfinder pathfinder : benchmark.pathfinders) {
+                if (newDecisionMaker(decisionMaker).wantsToAct(pathfinder)) {
+                    acting.add(pathfinder);
+                }
+            }
+            if (acting.isEmpty()) {
+                throw new IllegalStateException(decisionMaker + " never acts in " + benchmark.board);
+            }
+            pathfinders = spread(acting).toArray(new Pathfinder[0]);
+            dms = new DecisionMaker[pathfinders.length];
+            for (int i = 0; i < dms.length; i++) {
+                dms[i] = newDecisionMaker(decisionMaker);
+                dms[i].wantsToAct(pathfinders[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean wantsToAct(Asking asking) {
+        int i = asking.next;
+        asking.next = i + 1 == asking.pathfinders.length ? 0 : i + 1;
+        return asking.dm.wantsToAct(asking.pathfinders[i]);
+    }
+
+    @Benchmark
+    public BotMove takeAction(Decided decided) {
+        int i = decided.next;
+        decided.next = i + 1 == decided.pathfinders.length ? 0 : i + 1;
+        return decided.dms[i].takeAction(decided.pathfinders[i]);
+    }
+}
@@ -0,0 +1,61 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.server.BenchmarkStates;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A whole move of MyBot, from the pathfinder to the chosen direction. The two
+ * turns take turns like in PathfinderBenchmark.nextTurn. Nothing is
+ * speculated, so each move rebuilds the shortest path tree itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MyBotBenchmark {
+
+    @Param({BenchmarkStates.FIXTURE, BenchmarkStates.FIXTURE_2, BenchmarkStates.GENERATED_18,
+        BenchmarkStates.GENERATED_28})
+    public String board;
+
+    private AdvancedGameState[] turns;
+    private MyBot bot;
+    private int turn;
+
+    @Setup
+    public void setup() {
+        GameState[] states = BenchmarkStates.consecutive(board);
+        AdvancedGameState first = new AdvancedGameState(states[0]);
+        turns = new AdvancedGameState[]{first, new AdvancedGameState(first, states[1])};
+        bot = new MyBot(BotParameters.DEFAULTS, false);
+        bot.setup();
+    }
+
+    @TearDown
+    public void tearDown() {
+        bot.shutdown();
+    }
+
+    @Benchmark
+    public BotMove move() {
+        turn ^= 1;
+        return bot.move(turns[turn]);
+    }
+}
@@ -0,0 +1,85 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.bot.advanced.Vertex;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.server.BenchmarkStates;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creating a pathfinder and searching with it. The pathfinder only searches
+ * when it is first asked for a distance, so construct measures the
+ * constructor alone, threatMap the threat map alone, and the others ask for
+ * the closest mine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathfinderBenchmark {
+
+    @Param({BenchmarkStates.FIXTURE, BenchmarkStates.FIXTURE_2, BenchmarkStates.GENERATED_18,
+        BenchmarkStates.GENERATED_28})
+    public String board;
+
+    /**
+     * Two turns one after the other.
+     */
+    private AdvancedGameState[] turns;
+    private SearchScratch scratch;
+    private int turn;
+
+    @Setup
+    public void setup() {
+        GameState[] states = BenchmarkStates.consecutive(board);
+        AdvancedGameState first = new AdvancedGameState(states[0]);
+        turns = new AdvancedGameState[]{first, new AdvancedGameState(first, states[1])};
+        scratch = new SearchScratch();
+    }
+
+    @Benchmark
+    public Pathfinder construct() {
+        return new Pathfinder(turns[1], scratch, BotParameters.DEFAULTS);
+    }
+
+    /**
+     * The first turn of a game, with a new scratch and the shortest path tree
+     * built from nothing.
+     */
+    @Benchmark
+    public Vertex firstTurn() {
+        return new Pathfinder(turns[1], new SearchScratch(), BotParameters.DEFAULTS).getClosestMine();
+    }
+
+    /**
+     * A later turn on the scratch of the turn before. The two turns take
+     * turns, so every call rebuilds the tree for the changes of one turn.
+     */
+    @Benchmark
+    public Vertex nextTurn() {
+        turn ^= 1;
+        return new Pathfinder(turns[turn], scratch, BotParameters.DEFAULTS).getClosestMine();
+    }
+
+    /**
+     * The threat map a pathfinder builds when CombatDecisionMaker first asks
+     * for it.
+     */
+    @Benchmark
+    public ThreatMap threatMap() {
+        return new ThreatMap(turns[1]);
+    }
+}
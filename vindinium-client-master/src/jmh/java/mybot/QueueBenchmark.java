@@ -0,0 +1,131 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.bot.advanced.TileGraph;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.server.BenchmarkStates;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Dijkstra's algorithm from my position with the movement costs of a turn, the
+ * search ShortestPathTree.rebuild does, with each queue it could use.
+ * heap is IndexedMinHeap, the one it uses. priorityQueue is a
+ * java.util.PriorityQueue of boxed priority and tile pairs, which cannot
+ * decrease a key, so a tile is queued again instead and stale entries are
+ * skipped when polled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark {
+
+    @Param({BenchmarkStates.FIXTURE, BenchmarkStates.GENERATED_18, BenchmarkStates.GENERATED_28})
+    public String board;
+
+    @Param({"heap", "priorityQueue"})
+    public String queue;
+
+    private TileGraph graph;
+    private int[] costs;
+    private int source;
+    private int[] distances;
+    private IndexedMinHeap heap;
+
+    @Setup
+    public void setup() {
+        GameState[] states = BenchmarkStates.consecutive(board);
+        AdvancedGameState state = new AdvancedGameState(states[1]);
+        Pathfinder pathfinder = new Pathfinder(state, new SearchScratch(), BotParameters.DEFAULTS);
+        graph = state.getTileGraph();
+        costs = pathfinder.getCosts().clone();
+        source = graph.tileIndex(state.getMe().getPos());
+        distances = new int[graph.getTileCount()];
+        if (queue.equals("heap")) {
+            heap = new IndexedMinHeap(costs.length);
+        }
+    }
+
+    /**
+     * @return Sum of the distances to every reachable tile.
+     */
+    @Benchmark
+    public long search() {
+        if (heap == null) {
+            searchPriorityQueue();
+        } else {
+            searchHeap(heap);
+        }
+        long sum = 0;
+        for (int distance : distances) {
+            if (distance != ShortestPathTree.UNREACHABLE) {
+                sum += distance;
+            }
+        }
+        return sum;
+    }
+
+    private void searchHeap(IndexedMinHeap q) {
+        Arrays.fill(distances, ShortestPathTree.UNREACHABLE);
+        q.clear();
+        distances[source] = 0;
+        q.insert(source, 0);
+        while (!q.isEmpty()) {
+            int u = q.poll();
+            if (!graph.isPassable(u)) {
+                continue;
+            }
+            int end = graph.firstNeighbour(u + 1);
+            for (int k = graph.firstNeighbour(u); k < end; k++) {
+                int v = graph.neighbour(k);
+                int alt = distances[u] + costs[v];
+                if (alt < distances[v]) {
+                    if (distances[v] == ShortestPathTree.UNREACHABLE) {
+                        q.insert(v, alt);
+                    } else {
+                        q.decreaseKey(v, alt);
+                    }
+                    distances[v] = alt;
+                }
+            }
+        }
+    }
+
+    private void searchPriorityQueue() {
+        Arrays.fill(distances, ShortestPathTree.UNREACHABLE);
+        PriorityQueue<Long> q = new PriorityQueue<>();
+        distances[source] = 0;
+        q.add((long) source);
+        while (!q.isEmpty()) {
+            long entry = q.poll();
+            int u = (int) entry;
+            if ((int) (entry >>> 32) != distances[u] || !graph.isPassable(u)) {
+                continue;
+            }
+            int end = graph.firstNeighbour(u + 1);
+            for (int k = graph.firstNeighbour(u); k < end; k++) {
+                int v = graph.neighbour(k);
+                int alt = distances[u] + costs[v];
+                if (alt < distances[v]) {
+                    distances[v] = alt;
+                    q.add(((long) alt << 32) | v);
+                }
+            }
+        }
+    }
+}
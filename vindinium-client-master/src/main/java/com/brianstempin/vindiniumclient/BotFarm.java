@@ -0,0 +1,131 @@
+package com.brianstempin.vindiniumclient;
+
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedBot;
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedBotRunner;
+import com.brianstempin.vindiniumclient.bot.advanced.TurnStats;
+import com.brianstempin.vindiniumclient.dto.ApiKey;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.google.api.client.http.GenericUrl;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Plays many games at once from one process.
+ * <p>
+ * A number of workers each play games one after another until the wanted
+ * number of games has been played. Every game gets a new bot and its own
+ * AdvancedBotRunner, and the API keys are used in turn. The runners share the
+ * connections to the server, and the games share the board analysis caches.
+ * <p>
+ * Workers are virtual threads on JDKs that have them, found by reflection, and
+ * platform threads from a fixed pool otherwise.
+ */
+public class BotFarm {
+
+    private static final Logger logger = LogManager.getLogger(BotFarm.class);
+
+    private final List<ApiKey> apiKeys;
+    private final GenericUrl gameUrl;
+    private final Class<? extends AdvancedBot> botClass;
+    private final int games;
+    private final int concurrency;
+
+    /**
+     * @param apiKeys Keys of the bots, used in turn.
+     * @param gameUrl Arena or training URL.
+     * @param botClass Bot to play with, needs a public no argument constructor.
+     * @param games Number of games to play.
+     * @param concurrency Number of games played at once.
+     */
+    public BotFarm(List<ApiKey> apiKeys, GenericUrl gameUrl, Class<? extends AdvancedBot> botClass, int games,
+            int concurrency) {
+        if (apiKeys.isEmpty() || games < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("Need at least one key, one game and one worker");
+        }
+        this.apiKeys = apiKeys;
+        this.gameUrl = gameUrl;
+        this.botClass = botClass;
+        this.games = games;
+        this.concurrency = Math.min(concurrency, games);
+    }
+
+    /**
+     * Play every game and log the times of each one and of all of them.
+     *
+     * @return Turn times of all games, with the wall clock time of the farm.
+     */
+    public TurnStats run() throws InterruptedException {
+        final AtomicInteger nextGame = new AtomicInteger();
+        final List<TurnStats> results = new ArrayList<>();
+        ExecutorService executor = newExecutor(concurrency);
+        List<Future<Void>> workers = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int w = 0; w < concurrency; w++) {
+            workers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    int game;
+                    while ((game = nextGame.getAndIncrement()) < games) {
+                        TurnStats stats = play(game);
+                        synchronized (results) {
+                            results.add(stats);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                logger.error("Farm worker failed", e.getCause());
+            }
+        }
+        executor.shutdown();
+
+        TurnStats total = new TurnStats();
+        for (TurnStats stats : results) {
+            total.merge(stats);
+        }
+        total.setElapsedNanos(System.nanoTime() - start);
+        logger.info("Farm played {} of {} games with {} at once: {}", results.size(), games, concurrency, total);
+        return total;
+    }
+
+    private TurnStats play(int game) throws Exception {
+        ApiKey apiKey = apiKeys.get(game % apiKeys.size());
+        AdvancedBot bot = botClass.newInstance();
+        AdvancedBotRunner runner = new AdvancedBotRunner(apiKey, gameUrl, bot, false);
+        GameState result = runner.call();
+        TurnStats stats = runner.getTurnStats();
+        String url = result == null ? "no game" : result.getViewUrl();
+        logger.info("Farm game {} ({}): {}", game + 1, url, stats);
+        return stats;
+    }
+
+    /**
+     * @return An executor with a virtual thread per task if the JDK has them,
+     * otherwise a pool of threads.
+     */
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            logger.info("Farm uses virtual threads");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.info("Farm uses a pool of {} threads", threads);
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+}
@@ -18,6 +18,9 @@ import com.google.gson.GsonBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * CLI program for launching a bot
  */
@@ -52,8 +55,14 @@ public class Main {
             case "advanced":
                 runAdvancedBot(key, gameUrl, botClass);
                 break;
+            case "farm":
+                // Keys separated by commas, then the number of games and how many to play at once
+                int games = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+                int concurrency = args.length > 5 ? Integer.parseInt(args[5]) : games;
+                runBotFarm(key, gameUrl, botClass, games, concurrency);
+                break;
             default:
-                throw new RuntimeException("The bot type must be simple or advanced and must match the type of the bot.");
+                throw new RuntimeException("The bot type must be simple, advanced or farm and must match the type of the bot.");
         }
     }
 
@@ -65,6 +74,16 @@ public class Main {
         AdvancedBotRunner runner = new AdvancedBotRunner(apiKey, gameUrl, bot);
         runner.call();
     }
+    private static void runBotFarm(String keys, GenericUrl gameUrl, String botClass, int games, int concurrency)
+            throws Exception {
+        Class<? extends AdvancedBot> botClazz = Class.forName(botClass).asSubclass(AdvancedBot.class);
+        List<ApiKey> apiKeys = new ArrayList<>();
+        for (String key : keys.split(",")) {
+            apiKeys.add(new ApiKey(key.trim()));
+        }
+        new BotFarm(apiKeys, gameUrl, botClazz, games, concurrency).run();
+    }
+
     private static void runSimpleBot(String key, GenericUrl gameUrl, String botClass) throws Exception {
         Class<?> clazz = Class.forName(botClass);
         Class<? extends SimpleBot> botClazz = clazz.asSubclass(SimpleBot.class);
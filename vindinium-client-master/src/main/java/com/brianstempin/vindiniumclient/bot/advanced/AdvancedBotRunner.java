@@ -5,6 +5,7 @@ import com.brianstempin.vindiniumclient.bot.BotMove;
 import com.brianstempin.vindiniumclient.dto.ApiKey;
 import com.brianstempin.vindiniumclient.dto.GameState;
 import com.brianstempin.vindiniumclient.dto.Move;
+import com.brianstempin.vindiniumclient.server.WarmUp;
 import com.google.api.client.http.*;
 import com.google.api.client.http.apache.ApacheHttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
@@ -14,17 +15,27 @@ import com.google.api.client.json.gson.GsonFactory;
 import com.google.gson.Gson;
 import java.awt.Desktop;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import org.apache.http.client.HttpClient;
 import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 public class AdvancedBotRunner implements Callable<GameState> {
 
-    private static final HttpTransport HTTP_TRANSPORT = new ApacheHttpTransport();
+    /**
+     * Connections to the server, shared by every runner of the process.
+     */
+    private static final HttpTransport HTTP_TRANSPORT = new ApacheHttpTransport(newHttpClient());
     private static final JsonFactory JSON_FACTORY = new GsonFactory();
     private static final HttpRequestFactory REQUEST_FACTORY
             = HTTP_TRANSPORT.createRequestFactory(new HttpRequestInitializer() {
@@ -34,15 +45,48 @@ public class AdvancedBotRunner implements Callable<GameState> {
                 }
             });
     private static final Logger logger = LogManager.getLogger(AdvancedBotRunner.class);
+    /**
+     * The server kicks bots that take longer than this to answer.
+     */
+    private static final long TURN_TIME_LIMIT_MS = 1000;
+    private static final long JITTER_MARGIN_MS = 150;
+    private static final long MIN_BUDGET_MS = 20;
+
+    /**
+     * Most connections open at once. Every game talks to the same server, so
+     * the default limit of 20 connections per route would make games of a
+     * bot farm wait for each other.
+     */
+    private static final int MAX_CONNECTIONS = 200;
 
     private final ApiKey apiKey;
     private final GenericUrl gameUrl;
     private final AdvancedBot bot;
+    private final boolean openBrowser;
+    private final TurnStats turnStats = new TurnStats();
 
     public AdvancedBotRunner(ApiKey apiKey, GenericUrl gameUrl, AdvancedBot bot) {
+        this(apiKey, gameUrl, bot, true);
+    }
+
+    /**
+     * @param apiKey
+     * @param gameUrl
+     * @param bot
+     * @param openBrowser True to open the game in a browser when it starts.
+     */
+    public AdvancedBotRunner(ApiKey apiKey, GenericUrl gameUrl, AdvancedBot bot, boolean openBrowser) {
         this.apiKey = apiKey;
         this.gameUrl = gameUrl;
         this.bot = bot;
+        this.openBrowser = openBrowser;
+    }
+
+    private static HttpClient newHttpClient() {
+        DefaultHttpClient client = ApacheHttpTransport.newDefaultHttpClient();
+        ConnManagerParams.setMaxTotalConnections(client.getParams(), MAX_CONNECTIONS);
+        ConnManagerParams.setMaxConnectionsPerRoute(client.getParams(), new ConnPerRouteBean(MAX_CONNECTIONS));
+        return client;
     }
 
     @Override
@@ -50,8 +94,14 @@ public class AdvancedBotRunner implements Callable<GameState> {
         HttpContent content;
         HttpRequest request;
         HttpResponse response;
-        GameState gameState = null;
+        GameStateReader reader = new GameStateReader();
         AdvancedGameState advancedGameState;
+        RoundTripEstimator roundTrips = new RoundTripEstimator(TURN_TIME_LIMIT_MS, JITTER_MARGIN_MS, MIN_BUDGET_MS,
+                TimeUnit.MILLISECONDS);
+        long budget;
+        ReplayWriter replay = null;
+        DecisionTrace trace = null;
+        WarmUp warmUp = null;
 
         try {
             // Initial request
@@ -59,40 +109,128 @@ public class AdvancedBotRunner implements Callable<GameState> {
             content = new UrlEncodedContent(apiKey);
             request = REQUEST_FACTORY.buildPostRequest(gameUrl, content);
             request.setReadTimeout(0); // Wait forever to be assigned to a game
+            warmUp = WarmUp.start(bot.getClass());
             response = request.execute();
-            gameState = response.parseAs(GameState.class);
-            logger.info("Game URL: {}", gameState.getViewUrl());
+            if (warmUp != null) {
+                warmUp.stop();
+            }
+            TurnEvents.Span parse = TurnEvents.begin(TurnEvents.Phase.PARSE);
+            read(response, reader);
+            TurnEvents.startTurn(reader.getGameId(), reader.getTurn(), reader.getBoardSize());
+            parse.record();
+            long received = System.nanoTime();
+            long started = received;
+            budget = roundTrips.getBudgetNanos();
+            logger.info("Game URL: {}", reader.getViewUrl());
+            replay = ReplayWriter.forGame(reader);
+            trace = DecisionTrace.forGame(reader.getGameId());
+            DecisionTrace.setCurrent(trace);
 
-            if (Desktop.isDesktopSupported()) {
+            if (openBrowser && Desktop.isDesktopSupported()) {
                 try {
-                    Desktop.getDesktop().browse(new URI(gameState.getViewUrl()));
+                    Desktop.getDesktop().browse(new URI(reader.getViewUrl()));
                 } catch (URISyntaxException | IOException t) {
                     logger.info("Couldn't open game.");
                     //Pro exception handling
                 }
             }
 
-            advancedGameState = new AdvancedGameState(gameState);
+            TurnEvents.Span update = TurnEvents.begin(TurnEvents.Phase.STATE_UPDATE);
+            advancedGameState = new AdvancedGameState(reader);
+            update.record();
+            bot.setup();
 
             // Game loop
-            while (!gameState.getGame().isFinished() && !gameState.getHero().isCrashed()) {
-                logger.info("Taking turn " + gameState.getGame().getTurn());
+            while (!reader.isFinished() && !reader.isCrashed()) {
+                logger.info("Taking turn {}, {} ms budget", Unbox.box(reader.getTurn()),
+                        Unbox.box(TimeUnit.NANOSECONDS.toMillis(budget)));
+                GameState.Hero me = advancedGameState.getMe();
+                DecisionTrace.record(DecisionTrace.TURN, reader.getTurn(),
+                        advancedGameState.getTileGraph().tileIndex(me.getPos()), me.getLife());
+                long thinkStart = System.nanoTime();
+                TurnEvents.Span thinking = TurnEvents.begin(TurnEvents.Phase.MOVE);
                 BotMove direction = bot.move(advancedGameState);
+                thinking.record();
+                long think = System.nanoTime() - thinkStart;
+                DecisionTrace.record(DecisionTrace.MOVE, direction.ordinal(), (int) (think / 1000), 0);
+                if (System.nanoTime() - received > budget) {
+                    logger.warn("Turn {} took longer than its budget", Unbox.box(reader.getTurn()));
+                }
                 Move move = new Move(apiKey.getKey(), direction.toString());
 
                 HttpContent turn = new UrlEncodedContent(move);
-                HttpRequest turnRequest = REQUEST_FACTORY.buildPostRequest(new GenericUrl(gameState.getPlayUrl()), turn);
+                HttpRequest turnRequest = REQUEST_FACTORY.buildPostRequest(new GenericUrl(reader.getPlayUrl()), turn);
+                if (bot instanceof SpeculativeBot) {
+                    ((SpeculativeBot) bot).speculate(advancedGameState, direction);
+                }
+                long sent = System.nanoTime();
+                TurnEvents.Span roundTrip = TurnEvents.begin(TurnEvents.Phase.ROUND_TRIP);
                 HttpResponse turnResponse = turnRequest.execute();
+                roundTrip.end();
 
-                gameState = turnResponse.parseAs(GameState.class);
-                advancedGameState = new AdvancedGameState(advancedGameState, gameState);
+                parse = TurnEvents.begin(TurnEvents.Phase.PARSE);
+                read(turnResponse, reader);
+                TurnEvents.startTurn(reader.getGameId(), reader.getTurn(), reader.getBoardSize());
+                roundTrip.record();
+                parse.record();
+                long now = System.nanoTime();
+                roundTrips.record(now - sent);
+                turnStats.record(think, now - received);
+                turnStats.setElapsedNanos(now - started);
+                if (warmUp != null) {
+                    warmUp.report(think);
+                    warmUp = null;
+                }
+                received = now;
+                budget = roundTrips.getBudgetNanos();
+                if (replay != null) {
+                    replay.record(reader);
+                }
+                update = TurnEvents.begin(TurnEvents.Phase.STATE_UPDATE);
+                advancedGameState = new AdvancedGameState(advancedGameState, reader);
+                update.record();
             }
 
         } catch (Exception e) {
             logger.error("Error during game play", e);
+            if (trace != null) {
+                trace.dump();
+            }
         }
 
+        if (warmUp != null) {
+            warmUp.stop();
+        }
+        if (trace != null) {
+            trace.close();
+            DecisionTrace.setCurrent(null);
+        }
+
+        if (replay != null) {
+            replay.close();
+        }
+        bot.shutdown();
         logger.info("Game over");
-        return gameState;
+        return reader.getGameState();
+    }
+
+    /**
+     * @return Times of the turns played so far.
+     */
+    public TurnStats getTurnStats() {
+        return turnStats;
+    }
+
+    /**
+     * Read a response with the reader instead of response.parseAs, which
+     * would build the GameState DTO.
+     */
+    private static void read(HttpResponse response, GameStateReader reader) throws IOException {
+        InputStream in = response.getContent();
+        try {
+            reader.read(in);
+        } finally {
+            in.close();
+        }
     }
 }
@@ -1,19 +1,48 @@
 package com.brianstempin.vindiniumclient.bot.advanced;
 
 import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.dto.Positions;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AdvancedGameState {
 
+    /**
+     * Numbers the states of every game in the order they are made.
+     */
+    private static final AtomicLong stateCount = new AtomicLong();
+
     private final Map<GameState.Position, Mine> mines;
     private final Map<GameState.Position, Pub> pubs;
     private final Map<GameState.Position, GameState.Hero> heroesByPosition;
     private final Map<Integer, GameState.Hero> heroesById;
     private final Map<GameState.Position, Vertex> boardGraph;
+    private final TileGraph tileGraph;
+    private final TerrainCache terrainCache;
+    /**
+     * Distances of the terrain, or null before they are needed.
+     */
+    private TerrainDistances terrainDistances;
+    /**
+     * Vertices by tile index. Null for walls.
+     */
+    private final Vertex[] vertices;
     private final GameState.Hero me;
+    /**
+     * What changed since the previous turn. Empty on the first turn.
+     */
+    private final List<StateChange> changes;
+    /**
+     * Number of this state, and of the state it was made from or -1.
+     */
+    private final long number;
+    private final long previousNumber;
     private String viewUrl;
 
     /**
@@ -22,138 +51,210 @@ public class AdvancedGameState {
      * @param gameState
      */
     public AdvancedGameState(GameState gameState) {
+        this(internedHeroes(gameState), internedMe(gameState), gameState.getGame().getBoard().getSize(),
+                gameState.getGame().getBoard().getTiles(), gameState.getViewUrl(), TerrainCache.getDefault());
+    }
+
+    /**
+     * Creates an AdvancedGameState from the first response of a game.
+     *
+     * @param reader Reader that read the response.
+     */
+    public AdvancedGameState(GameStateReader reader) {
+        this(reader, TerrainCache.getDefault());
+    }
+
+    /**
+     * Creates an AdvancedGameState from the first response of a game, with
+     * the board analysis kept in the given cache instead of the default one.
+     *
+     * @param reader Reader that read the response.
+     * @param terrainCache Cache of the board graph and terrain distances.
+     */
+    public AdvancedGameState(GameStateReader reader, TerrainCache terrainCache) {
+        this(reader.getHeroes(), reader.getMe(), reader.getBoardSize(), reader.getTiles(), reader.getViewUrl(),
+                terrainCache);
+    }
+
+    /**
+     * @param heroes Heroes of the game, with the shared positions of the board.
+     * @param me Hero of this bot.
+     * @param size Width and height of the board.
+     * @param tiles Tiles of the board.
+     * @param viewUrl
+     * @param terrainCache Cache of the board graph and terrain distances.
+     */
+    private AdvancedGameState(List<GameState.Hero> heroes, GameState.Hero me, int size, CharSequence tiles,
+            String viewUrl, TerrainCache terrainCache) {
         boardGraph = new HashMap<>();
         mines = new HashMap<>();
         pubs = new HashMap<>();
         heroesById = new HashMap<>();
         heroesByPosition = new HashMap<>();
-        viewUrl = gameState.getViewUrl();
+        this.viewUrl = viewUrl;
 
         // Hero stuffs
-        for (GameState.Hero currentHero : gameState.getGame().getHeroes()) {
+        for (GameState.Hero currentHero : heroes) {
             this.heroesByPosition.put(currentHero.getPos(), currentHero);
             this.heroesById.put(currentHero.getId(), currentHero);
         }
 
-        this.me = gameState.getHero();
+        this.me = me;
 
         // Build the graph sans edges
-        GameState.Board board = gameState.getGame().getBoard();
-        for (int row = 0; row < board.getSize(); row++) {
-            for (int col = 0; col < board.getSize(); col++) {
+        Positions positions = Positions.forSize(size);
+        byte[] tileTypes = new byte[size * size];
+        byte[] mineOwners = new byte[tileTypes.length];
+        TileDecoder.decode(tiles, tileTypes, mineOwners);
+        for (int tile = 0; tile < tileTypes.length; tile++) {
+            // If its a mine or tavern, we treat it differently
+            // We don't care if its a hero because a separate index for those already exists
+            if (tileTypes[tile] == TileGraph.MINE) {
                 // Yeah, Vindinium does the x and y coordinates backwards
-                GameState.Position pos = new GameState.Position(row, col);
-                int tileStart = row * board.getSize() * 2 + (col * 2);
-                String tileValue = board.getTiles().substring(tileStart, tileStart + 1 + 1);
-
-                // We do nothing with tiles that are barriers
-                if (tileValue.equals("##")) {
-                    continue;
-                }
-
-                Vertex v = new Vertex(pos, new LinkedList<Vertex>());
-
-                this.boardGraph.put(pos, v);
-
-                // If its a mine or tavern, we treat it differently
-                // We don't care if its a hero because a separate index for those already exists
-                if (tileValue.startsWith("$")) {
-                    String owner = tileValue.substring(1);
-                    Mine mine;
-                    if (owner.equals("-")) {
-                        mine = new Mine(pos, null);
-                    } else {
-                        int ownerId = Integer.parseInt(owner);
-                        mine = new Mine(pos, this.heroesById.get(ownerId));
-                    }
-
-                    this.mines.put(pos, mine);
-                } else if (tileValue.equals("[]")) {
-                    Pub pub = new Pub(pos);
-                    this.pubs.put(pos, pub);
-                }
+                GameState.Position pos = positions.get(tile);
+                this.mines.put(pos, new Mine(pos, mineOwners[tile]));
+            } else if (tileTypes[tile] == TileGraph.PUB) {
+                GameState.Position pos = positions.get(tile);
+                this.pubs.put(pos, new Pub(pos));
             }
         }
 
-        // Add in the edges
-        // This graph doesn't take into account players because they move.  That is done elsewhere.
-        for (Vertex currentVertex : this.boardGraph.values()) {
-            GameState.Position currentVertexPosition = currentVertex.getPosition();
-
-            // Pubs and mines cannot be passed through
-            if (this.mines.containsKey(currentVertexPosition) || this.pubs.containsKey(currentVertexPosition)) {
-                continue;
-            }
-
-            // Other players cannot be passed through.  However, they move, and mines/pubs don't, so its easier to make
-            // the bot and path-finding deal with that.  We don't take other players into account here.
-            // We can only move NSEW, so no need for a fancy set of nested loops...
-            for (int xDelta = -1; xDelta <= 1; xDelta += 2) {
-                int currentX = currentVertex.getPosition().getX();
-                int newX = currentX + xDelta;
-                if (newX >= 0 && newX < board.getSize()) {
-                    GameState.Position adjacentPos = new GameState.Position(newX, currentVertex.getPosition().getY());
-                    Vertex adjacentVertex = this.boardGraph.get(adjacentPos);
-                    if (adjacentVertex != null) {
-                        currentVertex.getAdjacentVertices().add(adjacentVertex);
-                    }
-                }
-            }
-            for (int yDelta = -1; yDelta <= 1; yDelta += 2) {
-                int currentY = currentVertex.getPosition().getY();
-                int newY = currentY + yDelta;
-                if (newY >= 0 && newY < board.getSize()) {
-                    GameState.Position adjacentPos = new GameState.Position(currentVertex.getPosition().getX(), newY);
-                    Vertex adjacentVertex = this.boardGraph.get(adjacentPos);
-                    if (adjacentVertex != null) {
-                        currentVertex.getAdjacentVertices().add(adjacentVertex);
-                    }
-                }
-            }
-        }
+        // Same terrain, same graph, see TerrainCache
+        this.terrainCache = terrainCache;
+        this.tileGraph = this.terrainCache.getGraph(size, tileTypes);
+        this.vertices = buildVertices(this.tileGraph, this.boardGraph);
+        this.changes = Collections.emptyList();
+        this.number = stateCount.incrementAndGet();
+        this.previousNumber = -1;
     }
 
     /**
      * Creates a new AdvancedGameState by taking he previous AdvancedGameState
      * and updating is using a new GameState
+     * <p>
+     * The old state is not changed. Everything that did not change is shared
+     * with it, including the mines if none of them got a new owner. What did
+     * change is listed in getChanges().
      *
      * @param oldGameState
      * @param updatedState
      */
     public AdvancedGameState(AdvancedGameState oldGameState, GameState updatedState) {
+        this(oldGameState, internedHeroes(updatedState), internedMe(updatedState),
+                updatedState.getGame().getBoard().getTiles());
+    }
+
+    /**
+     * Creates a new AdvancedGameState from the previous one and the response
+     * of the next turn, like AdvancedGameState(AdvancedGameState, GameState).
+     *
+     * @param oldGameState
+     * @param reader Reader that read the response.
+     */
+    public AdvancedGameState(AdvancedGameState oldGameState, GameStateReader reader) {
+        this(oldGameState, reader.getHeroes(), reader.getMe(), reader.getTiles());
+    }
+
+    private AdvancedGameState(AdvancedGameState oldGameState, List<GameState.Hero> heroes, GameState.Hero me,
+            CharSequence tiles) {
 
         // Copy the stuff we can just re-use
         this.boardGraph = oldGameState.getBoardGraph();
+        this.tileGraph = oldGameState.getTileGraph();
+        this.vertices = oldGameState.vertices;
+        this.terrainCache = oldGameState.terrainCache;
+        this.terrainDistances = oldGameState.terrainDistances;
         this.pubs = oldGameState.getPubs();
         this.viewUrl = oldGameState.getViewUrl();
+        List<StateChange> changes = new ArrayList<>();
         // Re-build the hero maps
         this.heroesByPosition = new HashMap<>();
         this.heroesById = new HashMap<>();
-        for (GameState.Hero currentHero : updatedState.getGame().getHeroes()) {
+        for (GameState.Hero currentHero : heroes) {
             this.heroesByPosition.put(currentHero.getPos(), currentHero);
             this.heroesById.put(currentHero.getId(), currentHero);
+
+            GameState.Hero oldHero = oldGameState.getHeroesById().get(currentHero.getId());
+            if (oldHero == null) {
+                continue;
+            }
+            int tile = this.tileGraph.tileIndex(currentHero.getPos());
+            int oldTile = this.tileGraph.tileIndex(oldHero.getPos());
+            if (hasRespawned(oldHero, currentHero)) {
+                changes.add(new StateChange(StateChange.Type.HERO_RESPAWNED, currentHero.getId(), tile, oldTile));
+            } else if (tile != oldTile) {
+                changes.add(new StateChange(StateChange.Type.HERO_MOVED, currentHero.getId(), tile, oldTile));
+            }
         }
-        this.me = updatedState.getHero();
-
-        // Update the mines
-        this.mines = oldGameState.getMines();
-        for (Mine currentMine : this.mines.values()) {
-            // Vindinium does the x and y coordinates backwards
-            int tileStart = currentMine.getPosition().getX()
-                    * updatedState.getGame().getBoard().getSize()
-                    * 2 + (currentMine.getPosition().getY() * 2);
-            // We don't want the whole tile; we want the second char
-            String owner = updatedState.getGame().getBoard().getTiles().substring(tileStart + 1, tileStart + 1 + 1);
-            Mine mine;
-            if (owner.equals("-")) {
-                mine = new Mine(currentMine.getPosition(), null);
-            } else {
-                int ownerId = Integer.parseInt(owner);
-                mine = new Mine(currentMine.getPosition(), this.heroesById.get(ownerId));
+        this.me = me;
+
+        // Only mines with a new owner are replaced, in a copy, the old state may still be in use
+        Map<GameState.Position, Mine> updatedMines = null;
+        for (Mine currentMine : oldGameState.getMines().values()) {
+            int tile = this.tileGraph.tileIndex(currentMine.getPosition());
+            int ownerId = TileDecoder.decodeMineOwner(tiles, tile);
+            int oldOwnerId = currentMine.getOwnerId();
+            if (ownerId == oldOwnerId) {
+                continue;
             }
+            Mine mine = new Mine(currentMine.getPosition(), ownerId);
+
+            if (updatedMines == null) {
+                updatedMines = new HashMap<>(oldGameState.getMines());
+            }
+            updatedMines.put(mine.getPosition(), mine);
+            changes.add(new StateChange(StateChange.Type.MINE_CAPTURED, ownerId, tile, oldOwnerId));
+        }
+        this.mines = updatedMines != null ? updatedMines : oldGameState.getMines();
+        this.changes = Collections.unmodifiableList(changes);
+        this.number = stateCount.incrementAndGet();
+        this.previousNumber = oldGameState.number;
+    }
 
-            this.mines.put(mine.getPosition(), mine);
+    /**
+     * Copies of the heroes of a game with the shared positions of the board,
+     * like GameStateReader makes them. The game state itself is immutable and
+     * is left as it is.
+     */
+    private static List<GameState.Hero> internedHeroes(GameState gameState) {
+        Positions positions = Positions.forSize(gameState.getGame().getBoard().getSize());
+        List<GameState.Hero> heroes = new ArrayList<>(gameState.getGame().getHeroes().size());
+        for (GameState.Hero h : gameState.getGame().getHeroes()) {
+            heroes.add(interned(h, positions));
         }
+        return heroes;
+    }
+
+    /**
+     * Copy of the hero of this bot with the shared positions of the board.
+     */
+    private static GameState.Hero internedMe(GameState gameState) {
+        return interned(gameState.getHero(), Positions.forSize(gameState.getGame().getBoard().getSize()));
+    }
+
+    private static GameState.Hero interned(GameState.Hero h, Positions positions) {
+        return new GameState.Hero(h.getId(), h.getName(), h.getUserId(), h.getElo(), positions.intern(h.getPos()),
+                h.getLife(), h.getGold(), h.getMineCount(), positions.intern(h.getSpawnPos()), h.isCrashed());
+    }
+
+    /**
+     * A killed hero comes back at its spawn point with full life and loses its
+     * mines. Heroes move one tile per turn, so a longer jump to the spawn point
+     * is a respawn. A hero killed next to or on its spawn point is only
+     * noticed if it had mines.
+     */
+    private static boolean hasRespawned(GameState.Hero oldHero, GameState.Hero hero) {
+        final int MAX_LIFE = 100;
+        if (!hero.getPos().equals(hero.getSpawnPos())) {
+            return false;
+        }
+        int moves = Math.abs(hero.getPos().getX() - oldHero.getPos().getX())
+                + Math.abs(hero.getPos().getY() - oldHero.getPos().getY());
+        if (moves > 1) {
+            return true;
+        }
+        return oldHero.getMineCount() > 0 && hero.getMineCount() == 0
+                && oldHero.getLife() < MAX_LIFE && hero.getLife() == MAX_LIFE;
     }
 
     public AdvancedGameState(Map<GameState.Position, Mine> mines, Map<GameState.Position, Pub> pubs,
@@ -165,6 +266,68 @@ public class AdvancedGameState {
         this.heroesById = heroesById;
         this.boardGraph = boardGraph;
         this.me = me;
+        this.changes = Collections.emptyList();
+        this.number = stateCount.incrementAndGet();
+        this.previousNumber = -1;
+
+        int size = 0;
+        for (GameState.Position pos : boardGraph.keySet()) {
+            size = Math.max(size, Math.max(pos.getX(), pos.getY()) + 1);
+        }
+        byte[] tileTypes = new byte[size * size];
+        for (GameState.Position pos : boardGraph.keySet()) {
+            byte type = TileGraph.AIR;
+            if (mines.containsKey(pos)) {
+                type = TileGraph.MINE;
+            } else if (pubs.containsKey(pos)) {
+                type = TileGraph.PUB;
+            }
+            tileTypes[pos.getX() * size + pos.getY()] = type;
+        }
+        this.terrainCache = TerrainCache.getDefault();
+        this.tileGraph = this.terrainCache.getGraph(size, tileTypes);
+        this.vertices = new Vertex[tileTypes.length];
+        for (Vertex v : boardGraph.values()) {
+            int tile = tileGraph.tileIndex(v.getPosition());
+            v.setIndex(tile);
+            this.vertices[tile] = v;
+        }
+    }
+
+    /**
+     * Creates a vertex for every tile that is not a wall and links it to the
+     * vertices it can move to. Mines and pubs cannot be passed through, so
+     * they get no edges.
+     * <p>
+     * This graph doesn't take into account players because they move. That is
+     * done elsewhere.
+     *
+     * @param tileGraph
+     * @param boardGraph Map that the vertices are added to.
+     * @return Vertices by tile index.
+     */
+    private static Vertex[] buildVertices(TileGraph tileGraph, Map<GameState.Position, Vertex> boardGraph) {
+        Vertex[] vertices = new Vertex[tileGraph.getTileCount()];
+        Positions positions = Positions.forSize(tileGraph.getSize());
+        for (int tile = 0; tile < vertices.length; tile++) {
+            if (tileGraph.getTileType(tile) != TileGraph.WALL) {
+                GameState.Position pos = positions.get(tile);
+                vertices[tile] = new Vertex(pos, new LinkedList<Vertex>());
+                vertices[tile].setIndex(tile);
+                boardGraph.put(pos, vertices[tile]);
+            }
+        }
+
+        for (int tile = 0; tile < vertices.length; tile++) {
+            if (!tileGraph.isPassable(tile)) {
+                continue;
+            }
+            int end = tileGraph.firstNeighbour(tile + 1);
+            for (int k = tileGraph.firstNeighbour(tile); k < end; k++) {
+                vertices[tile].getAdjacentVertices().add(vertices[tileGraph.neighbour(k)]);
+            }
+        }
+        return vertices;
     }
 
     public Map<GameState.Position, Mine> getMines() {
@@ -187,10 +350,89 @@ public class AdvancedGameState {
         return boardGraph;
     }
 
+    /**
+     * Returns the board as flat arrays indexed by tile. Same board as
+     * getBoardGraph, but without hashing or object graphs.
+     *
+     * @return Graph of the static terrain.
+     */
+    public TileGraph getTileGraph() {
+        return tileGraph;
+    }
+
+    /**
+     * Returns distances between tiles when heroes are ignored. Computed or
+     * read from the terrain cache the first time they are needed in a game,
+     * later turns get them from the state they were made from.
+     *
+     * @return Distances of the static terrain.
+     */
+    public TerrainDistances getTerrainDistances() {
+        if (terrainDistances == null) {
+            terrainDistances = terrainCache.getDistances(tileGraph);
+        }
+        return terrainDistances;
+    }
+
+    /**
+     * @param tile Tile index.
+     * @return The vertex of the tile, or null if the tile is a wall.
+     */
+    public Vertex getVertex(int tile) {
+        return vertices[tile];
+    }
+
+    /**
+     * @param position Any position, on or off the board.
+     * @return The vertex at the position, or null if there is none.
+     */
+    public Vertex getVertex(GameState.Position position) {
+        if (!tileGraph.contains(position)) {
+            return null;
+        }
+        return vertices[tileGraph.tileIndex(position)];
+    }
+
     public GameState.Hero getMe() {
         return me;
     }
 
+    /**
+     * Returns what changed between the previous turn and this one: heroes that
+     * moved or respawned and mines that got a new owner. Lets code that keeps
+     * results between turns update only what changed.
+     *
+     * @return Changes in no particular order. Empty on the first turn.
+     */
+    public List<StateChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Check from the changes whether every hero but one is where it was in an
+     * earlier state. Results that only depend on where the other heroes are,
+     * like the movement costs of MyBot, can then be kept.
+     *
+     * @param earlier A state of the same game.
+     * @param heroId Hero whose moves do not count, usually me.
+     * @return True if earlier is this state, or this state was made from it
+     * and no other hero moved or respawned. False if it cannot be told.
+     */
+    public boolean othersStayedSince(AdvancedGameState earlier, int heroId) {
+        if (earlier == this) {
+            return true;
+        }
+        if (earlier == null || earlier.number != previousNumber) {
+            return false;
+        }
+        for (StateChange change : changes) {
+            if (change.getType() != StateChange.Type.MINE_CAPTURED && change.getHeroId() != heroId) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public String getViewUrl() {
         return viewUrl;
     }
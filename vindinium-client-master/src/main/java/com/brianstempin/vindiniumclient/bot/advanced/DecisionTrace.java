@@ -0,0 +1,459 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Trace of the decisions of a bot: the turns, which decision makers ran and
+ * whether they acted, the scores of the vertices they compared and the
+ * targets of the paths they took.
+ * <p>
+ * A record is a kind and three ints. The game thread writes it into a
+ * preallocated ring, so tracing neither allocates nor formats. A background
+ * thread shared by every trace drains the rings to files of compact records
+ * every DRAIN_INTERVAL_MS, and main() prints a file as text. If the game
+ * thread gets more than CAPACITY records ahead of the drain, the oldest are
+ * overwritten and the file says how many were dropped. The ring always holds
+ * the last CAPACITY records, which dump() writes to the log when a game fails.
+ * <p>
+ * Code records with the static record(), into the trace of the calling
+ * thread set with setCurrent(). A thread without one records nothing.
+ */
+public final class DecisionTrace implements Closeable {
+
+    /**
+     * System property with the directory of the trace files. Empty keeps the
+     * trace in memory only, for dumps.
+     */
+    public static final String DIRECTORY_PROPERTY = "vindinium.traces";
+    public static final String DEFAULT_DIRECTORY = "traces";
+
+    /**
+     * Turn, tile of my hero, life of my hero.
+     */
+    public static final int TURN = 1;
+    /**
+     * Name id of the decision maker, 1 if it acts and 0 if not.
+     */
+    public static final int DECISION_MAKER = 2;
+    /**
+     * Tile, score.
+     */
+    public static final int VERTEX_SCORE = 3;
+    /**
+     * Goal tile, moves to reach it, ordinal of the first move.
+     */
+    public static final int PATH_TARGET = 4;
+    /**
+     * Ordinal of the move, microseconds of thinking.
+     */
+    public static final int MOVE = 5;
+    /**
+     * Only in files: records lost because the game thread overwrote them
+     * before they were drained.
+     */
+    public static final int DROPPED = 6;
+    /**
+     * Only in files: name id and the name it stands for, before the first
+     * record using it.
+     */
+    static final int NAME = 0;
+
+    static final int CAPACITY = 4096;
+    static final int MAGIC = 0x44545231;
+    static final long DRAIN_INTERVAL_MS = 100;
+    private static final int FIELDS = 4;
+
+    private static final Logger logger = LogManager.getLogger(DecisionTrace.class);
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "trace-writer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    private static final ThreadLocal<DecisionTrace> traceByThread = new ThreadLocal<>();
+
+    private static final Map<String, Integer> nameIds = new HashMap<>();
+    private static final List<String> names = new ArrayList<>();
+
+    // Copy of a ring being drained, only used on the writer thread
+    private static final int[] drainRecords = new int[CAPACITY * FIELDS];
+    private static final long[] drainTimes = new long[CAPACITY];
+
+    private final String name;
+    private final Path file;
+    private final long startNanos = System.nanoTime();
+
+    // Written by the game thread only, published by written
+    private final int[] records = new int[CAPACITY * FIELDS];
+    private final long[] times = new long[CAPACITY];
+    private final AtomicLong written = new AtomicLong();
+
+    // Only used on the writer thread
+    private final ScheduledFuture<?> drainTask;
+    private long drained;
+    private DataOutputStream out;
+    private final BitSet namesWritten = new BitSet();
+    private long lastTime;
+    private boolean failed;
+
+    private DecisionTrace(String name, Path file) {
+        this.name = name;
+        this.file = file;
+        if (file == null) {
+            drainTask = null;
+        } else {
+            drainTask = executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param gameId Id of the game, names the file.
+     * @return New trace of the game, written to the directory of the system
+     * property.
+     */
+    public static DecisionTrace forGame(String gameId) {
+        String directory = System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY);
+        Path file = null;
+        if (!directory.isEmpty()) {
+            file = Paths.get(directory, String.valueOf(gameId).replaceAll("[^A-Za-z0-9_-]", "_") + "-"
+                    + System.currentTimeMillis() + ".trace");
+        }
+        return new DecisionTrace(gameId, file);
+    }
+
+    /**
+     * @param trace Trace the calling thread records into, or null to stop
+     * recording.
+     */
+    public static void setCurrent(DecisionTrace trace) {
+        if (trace == null) {
+            traceByThread.remove();
+        } else {
+            traceByThread.set(trace);
+        }
+    }
+
+    /**
+     * Record into the trace of the calling thread, if it has one.
+     *
+     * @param kind TURN, DECISION_MAKER, VERTEX_SCORE, PATH_TARGET or MOVE.
+     */
+    public static void record(int kind, int a, int b, int c) {
+        DecisionTrace trace = traceByThread.get();
+        if (trace != null) {
+            trace.add(kind, a, b, c);
+        }
+    }
+
+    /**
+     * @return Id of a name, the same for the same name. Look it up once and
+     * keep it, this takes a lock.
+     */
+    public static synchronized int nameId(String name) {
+        Integer id = nameIds.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            nameIds.put(name, id);
+        }
+        return id;
+    }
+
+    private static synchronized String name(int id) {
+        return id >= 0 && id < names.size() ? names.get(id) : "#" + id;
+    }
+
+    /**
+     * Add a record. Only the thread playing the game may call this.
+     */
+    private void add(int kind, int a, int b, int c) {
+        long n = written.get();
+        int slot = (int) n & (CAPACITY - 1);
+        int i = slot * FIELDS;
+        records[i] = kind;
+        records[i + 1] = a;
+        records[i + 2] = b;
+        records[i + 3] = c;
+        times[slot] = System.nanoTime();
+        written.lazySet(n + 1);
+    }
+
+    /**
+     * Write every record still in the ring to the log, oldest first. Only the
+     * thread playing the game may call this.
+     */
+    public void dump() {
+        long end = written.get();
+        long start = Math.max(0, end - CAPACITY);
+        StringBuilder text = new StringBuilder();
+        for (long n = start; n < end; n++) {
+            int slot = (int) n & (CAPACITY - 1);
+            int i = slot * FIELDS;
+            text.append(System.lineSeparator());
+            format(text, times[slot] - startNanos, records[i], records[i + 1], records[i + 2], records[i + 3]);
+        }
+        logger.error("Last {} decisions of {}:{}", end - start, name, text);
+    }
+
+    /**
+     * Drain what is left and close the file, waiting for the writer thread.
+     */
+    @Override
+    public void close() {
+        if (drainTask == null) {
+            return;
+        }
+        drainTask.cancel(false);
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                    closeFile();
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Could not finish trace {}", file, e.getCause());
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Write the records added since the last drain. Runs on the writer
+     * thread.
+     */
+    private void drain() {
+        if (failed) {
+            return;
+        }
+        long end = written.get();
+        long start = Math.max(drained, end - CAPACITY);
+        for (long n = start; n < end; n++) {
+            int slot = (int) n & (CAPACITY - 1);
+            int i = (int) (n - start) * FIELDS;
+            int j = slot * FIELDS;
+            drainRecords[i] = records[j];
+            drainRecords[i + 1] = records[j + 1];
+            drainRecords[i + 2] = records[j + 2];
+            drainRecords[i + 3] = records[j + 3];
+            drainTimes[(int) (n - start)] = times[slot];
+        }
+        // Records overwritten while they were copied may be torn. The game
+        // thread may also be writing record written.get() over the slot of
+        // written.get() - CAPACITY before it publishes it.
+        long firstIntact = Math.max(start, written.get() - CAPACITY + 1);
+        try {
+            if (out == null) {
+                open();
+            }
+            if (firstIntact > drained) {
+                writeRecord(DROPPED, lastTime, (int) Math.min(Integer.MAX_VALUE, firstIntact - drained), 0, 0);
+            }
+            for (long n = firstIntact; n < end; n++) {
+                int i = (int) (n - start) * FIELDS;
+                if (drainRecords[i] == DECISION_MAKER && !namesWritten.get(drainRecords[i + 1])) {
+                    int id = drainRecords[i + 1];
+                    out.writeByte(NAME);
+                    writeVarint(id);
+                    out.writeUTF(name(id));
+                    namesWritten.set(id);
+                }
+                writeRecord(drainRecords[i], drainTimes[(int) (n - start)] - startNanos, drainRecords[i + 1],
+                        drainRecords[i + 2], drainRecords[i + 3]);
+            }
+            out.flush();
+        } catch (IOException e) {
+            logger.warn("Could not write trace {}, stopping", file, e);
+            failed = true;
+            closeFile();
+        }
+        drained = end;
+    }
+
+    private void open() throws IOException {
+        Path directory = file.getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeUTF(String.valueOf(name));
+        out.writeLong(System.currentTimeMillis());
+    }
+
+    /**
+     * byte kind, varint nanoseconds since the last record, zigzag varints a,
+     * b and c.
+     */
+    private void writeRecord(int kind, long time, int a, int b, int c) throws IOException {
+        out.writeByte(kind);
+        writeVarint(Math.max(0, time - lastTime));
+        lastTime = Math.max(lastTime, time);
+        writeVarint(zigzag(a));
+        writeVarint(zigzag(b));
+        writeVarint(zigzag(c));
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xffffffffL;
+    }
+
+    private void closeFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                logger.warn("Could not close trace {}", file, e);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Append a record as text.
+     *
+     * @param nanos Time of the record since the start of the trace.
+     */
+    static void format(StringBuilder text, long nanos, int kind, int a, int b, int c) {
+        text.append(String.format("%10.3f ms ", nanos / 1e6));
+        switch (kind) {
+            case TURN:
+                text.append("turn ").append(a).append(", at tile ").append(b).append(", life ").append(c);
+                break;
+            case DECISION_MAKER:
+                text.append(name(a)).append(b != 0 ? " acts" : " passes");
+                break;
+            case VERTEX_SCORE:
+                text.append("vertex ").append(a).append(" scores ").append(b);
+                break;
+            case PATH_TARGET:
+                text.append("path to ").append(a).append(", ").append(b).append(" moves, ").append(move(c));
+                break;
+            case MOVE:
+                text.append("move ").append(move(a)).append(" after ").append(b).append(" us");
+                break;
+            case DROPPED:
+                text.append(a).append(" records dropped");
+                break;
+            default:
+                text.append("kind ").append(kind).append(' ').append(a).append(' ').append(b).append(' ').append(c);
+        }
+    }
+
+    private static String move(int ordinal) {
+        BotMove[] moves = BotMove.values();
+        return ordinal >= 0 && ordinal < moves.length ? moves[ordinal].toString() : "?";
+    }
+
+    /**
+     * Print trace files as text.
+     *
+     * @param args Paths of the files.
+     */
+    public static void main(String args[]) throws IOException {
+        for (String arg : args) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(
+                    Paths.get(arg))))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(arg + " is not a trace");
+                }
+                String game = in.readUTF();
+                long started = in.readLong();
+                System.out.println("Trace of " + game + ", started " + new java.util.Date(started));
+                Map<Integer, String> fileNames = new HashMap<>();
+                StringBuilder line = new StringBuilder();
+                long time = 0;
+                while (true) {
+                    int kind;
+                    try {
+                        kind = in.readByte();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (kind == NAME) {
+                        int id = (int) readVarint(in);
+                        fileNames.put(id, in.readUTF());
+                        continue;
+                    }
+                    time += readVarint(in);
+                    int a = unzigzag(readVarint(in));
+                    int b = unzigzag(readVarint(in));
+                    int c = unzigzag(readVarint(in));
+                    line.setLength(0);
+                    if (kind == DECISION_MAKER) {
+                        // Ids of another process, use the names of the file
+                        line.append(String.format("%10.3f ms ", time / 1e6)).append(fileNames.get(a))
+                                .append(b != 0 ? " acts" : " passes");
+                    } else {
+                        format(line, time, kind, a, b, c);
+                    }
+                    System.out.println(line);
+                }
+            }
+        }
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int unzigzag(long value) {
+        int v = (int) value;
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
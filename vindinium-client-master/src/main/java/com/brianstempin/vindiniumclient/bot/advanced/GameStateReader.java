@@ -0,0 +1,713 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.dto.Positions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the JSON the server sends every turn without building the GameState
+ * DTO.
+ * <p>
+ * The response is read into a buffer that is kept for the next turn and
+ * parsed in one pass. Heroes are built with the shared positions of the board
+ * and the tiles are not copied: getTiles() reads them from the buffer, so
+ * TileDecoder works on the response itself. Strings that are the same as in
+ * the previous response, like names and URLs, are not created again. Fields
+ * the reader does not know are skipped. A null in the list of heroes is not
+ * a game state and is rejected like other malformed input.
+ * <p>
+ * Everything read is valid until the next call to read. getGameState() builds
+ * the DTO for code that needs one. Instances are not thread safe, use one per
+ * game.
+ */
+public class GameStateReader {
+
+    private byte[] buffer = new byte[16 * 1024];
+    private int length;
+    private int pos;
+    /**
+     * Key of the member being read.
+     */
+    private int keyStart;
+    private int keyLength;
+
+    private String gameId;
+    private int turn;
+    private int maxTurns;
+    private boolean finished;
+    private String token;
+    private String viewUrl;
+    private String playUrl;
+    private int boardSize;
+    private final ByteSlice tileBytes = new ByteSlice();
+    /**
+     * The tiles, if they had escapes and could not be read from the buffer.
+     */
+    private String tileString;
+
+    private HeroFields[] heroFields = new HeroFields[0];
+    private int heroCount;
+    private final HeroFields meFields = new HeroFields();
+    private List<GameState.Hero> heroes;
+    private GameState.Hero me;
+    private GameState gameState;
+
+    /**
+     * Read a whole response. The stream is read to the end but not closed.
+     *
+     * @param in JSON of a GameState, in UTF-8.
+     * @throws IOException If the stream cannot be read or is not a GameState.
+     */
+    public void read(InputStream in) throws IOException {
+        length = 0;
+        int n;
+        while ((n = in.read(buffer, length, buffer.length - length)) >= 0) {
+            length += n;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            }
+        }
+        parse();
+    }
+
+    private void parse() throws IOException {
+        pos = 0;
+        heroCount = 0;
+        boardSize = 0;
+        tileBytes.set(buffer, 0, 0);
+        tileString = null;
+        meFields.present = false;
+        heroes = null;
+        me = null;
+        gameState = null;
+
+        if (beginObject()) {
+            do {
+                readKey();
+                if (keyIs("game")) {
+                    readGame();
+                } else if (keyIs("hero")) {
+                    readHero(meFields);
+                } else if (keyIs("token")) {
+                    token = readString(token);
+                } else if (keyIs("viewUrl")) {
+                    viewUrl = readString(viewUrl);
+                } else if (keyIs("playUrl")) {
+                    playUrl = readString(playUrl);
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        skipWhitespace();
+        if (pos != length) {
+            throw error("Data after the game state");
+        }
+        if (boardSize <= 0 || getTiles().length() != 2 * boardSize * boardSize) {
+            throw error("No board or tiles of the wrong length");
+        }
+
+        Positions positions = Positions.forSize(boardSize);
+        heroes = new ArrayList<>(heroCount);
+        for (int i = 0; i < heroCount; i++) {
+            heroes.add(heroFields[i].toHero(positions));
+        }
+        me = meFields.present ? meFields.toHero(positions) : null;
+    }
+
+    private void readGame() throws IOException {
+        if (!beginObject()) {
+            return;
+        }
+        do {
+            readKey();
+            if (keyIs("id")) {
+                gameId = readString(gameId);
+            } else if (keyIs("turn")) {
+                turn = readInt();
+            } else if (keyIs("maxTurns")) {
+                maxTurns = readInt();
+            } else if (keyIs("finished")) {
+                finished = readBoolean();
+            } else if (keyIs("heroes")) {
+                readHeroes();
+            } else if (keyIs("board")) {
+                readBoard();
+            } else {
+                skipValue();
+            }
+        } while (nextMember());
+    }
+
+    private void readHeroes() throws IOException {
+        if (!beginArray()) {
+            return;
+        }
+        do {
+            if (heroCount == heroFields.length) {
+                heroFields = Arrays.copyOf(heroFields, heroCount + 4);
+                for (int i = heroCount; i < heroFields.length; i++) {
+                    heroFields[i] = new HeroFields();
+                }
+            }
+            if (consumeNull()) {
+                throw error("Null hero");
+            }
+            readHero(heroFields[heroCount++]);
+        } while (nextElement());
+    }
+
+    private void readHero(HeroFields hero) throws IOException {
+        hero.clear();
+        if (consumeNull()) {
+            hero.present = false;
+            return;
+        }
+        if (!beginObject()) {
+            return;
+        }
+        do {
+            readKey();
+            if (keyIs("id")) {
+                hero.id = readInt();
+            } else if (keyIs("name")) {
+                hero.name = readString(hero.previousName);
+            } else if (keyIs("userId")) {
+                hero.userId = readString(hero.previousUserId);
+            } else if (keyIs("elo")) {
+                hero.elo = readInt();
+            } else if (keyIs("pos")) {
+                readPosition(hero.pos);
+            } else if (keyIs("life")) {
+                hero.life = readInt();
+            } else if (keyIs("gold")) {
+                hero.gold = readInt();
+            } else if (keyIs("mineCount")) {
+                hero.mineCount = readInt();
+            } else if (keyIs("spawnPos")) {
+                readPosition(hero.spawnPos);
+            } else if (keyIs("crashed")) {
+                hero.crashed = readBoolean();
+            } else {
+                skipValue();
+            }
+        } while (nextMember());
+    }
+
+    /**
+     * @param xy Receives x and y.
+     */
+    private void readPosition(int[] xy) throws IOException {
+        if (!beginObject()) {
+            return;
+        }
+        do {
+            readKey();
+            if (keyIs("x")) {
+                xy[0] = readInt();
+            } else if (keyIs("y")) {
+                xy[1] = readInt();
+            } else {
+                skipValue();
+            }
+        } while (nextMember());
+    }
+
+    private void readBoard() throws IOException {
+        if (!beginObject()) {
+            return;
+        }
+        do {
+            readKey();
+            if (keyIs("size")) {
+                boardSize = readInt();
+            } else if (keyIs("tiles")) {
+                readTiles();
+            } else {
+                skipValue();
+            }
+        } while (nextMember());
+    }
+
+    private void readTiles() throws IOException {
+        expect('"');
+        int start = pos;
+        int end = findStringEnd();
+        if (end < 0) {
+            tileString = readEscapedString(start);
+        } else {
+            tileBytes.set(buffer, start, end - start);
+            pos = end + 1;
+        }
+    }
+
+    // JSON
+
+    private IOException error(String message) {
+        return new IOException(message + " at byte " + pos + " of the game state");
+    }
+
+    private void skipWhitespace() {
+        while (pos < length) {
+            byte b = buffer[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean consume(char c) {
+        skipWhitespace();
+        if (pos < length && buffer[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) throws IOException {
+        if (!consume(c)) {
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    /**
+     * @return False if the value is null or an empty object.
+     */
+    private boolean beginObject() throws IOException {
+        if (consumeNull()) {
+            return false;
+        }
+        expect('{');
+        return !consume('}');
+    }
+
+    private boolean nextMember() throws IOException {
+        if (consume(',')) {
+            return true;
+        }
+        expect('}');
+        return false;
+    }
+
+    /**
+     * @return False if the value is null or an empty array.
+     */
+    private boolean beginArray() throws IOException {
+        if (consumeNull()) {
+            return false;
+        }
+        expect('[');
+        return !consume(']');
+    }
+
+    private boolean nextElement() throws IOException {
+        if (consume(',')) {
+            return true;
+        }
+        expect(']');
+        return false;
+    }
+
+    private boolean consumeNull() {
+        skipWhitespace();
+        if (pos + 4 <= length && buffer[pos] == 'n' && buffer[pos + 1] == 'u' && buffer[pos + 2] == 'l'
+                && buffer[pos + 3] == 'l') {
+            pos += 4;
+            return true;
+        }
+        return false;
+    }
+
+    private void readKey() throws IOException {
+        expect('"');
+        keyStart = pos;
+        int end = findStringEnd();
+        if (end < 0) {
+            // No key we know has escapes
+            readEscapedString(keyStart);
+            keyLength = 0;
+        } else {
+            keyLength = end - keyStart;
+            pos = end + 1;
+        }
+        expect(':');
+    }
+
+    private boolean keyIs(String name) {
+        if (keyLength != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < keyLength; i++) {
+            if (buffer[keyStart + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the closing quote of a string that starts at pos.
+     *
+     * @return Index of the quote, or -1 if the string has escapes.
+     */
+    private int findStringEnd() throws IOException {
+        for (int i = pos; i < length; i++) {
+            if (buffer[i] == '"') {
+                return i;
+            }
+            if (buffer[i] == '\\') {
+                return -1;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    /**
+     * @param previous The value of the previous response.
+     * @return The string, previous if it is the same, or null.
+     */
+    private String readString(String previous) throws IOException {
+        if (consumeNull()) {
+            return null;
+        }
+        expect('"');
+        int start = pos;
+        int end = findStringEnd();
+        if (end < 0) {
+            return readEscapedString(start);
+        }
+        pos = end + 1;
+        if (previous != null && previous.length() == end - start) {
+            boolean same = true;
+            for (int i = start; i < end && same; i++) {
+                same = buffer[i] == previous.charAt(i - start);
+            }
+            if (same) {
+                return previous;
+            }
+        }
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a string with escapes. Escapes are ASCII, so the bytes are decoded
+     * first and the escapes replaced after.
+     *
+     * @param start Index after the opening quote.
+     */
+    private String readEscapedString(int start) throws IOException {
+        int end = start;
+        while (end < length && buffer[end] != '"') {
+            end += buffer[end] == '\\' ? 2 : 1;
+        }
+        if (end >= length) {
+            throw error("Unterminated string");
+        }
+        pos = end + 1;
+        String raw = new String(buffer, start, end - start, StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            c = raw.charAt(++i);
+            switch (c) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 >= raw.length()) {
+                        throw error("Bad unicode escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Bad unicode escape");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The number, 0 for null. Fractions are cut off.
+     */
+    private int readInt() throws IOException {
+        if (consumeNull()) {
+            return 0;
+        }
+        boolean negative = consume('-');
+        int start = pos;
+        int value = 0;
+        while (pos < length && buffer[pos] >= '0' && buffer[pos] <= '9') {
+            value = 10 * value + buffer[pos++] - '0';
+        }
+        if (pos == start) {
+            throw error("Expected a number");
+        }
+        skipNumberRest();
+        return negative ? -value : value;
+    }
+
+    private void skipNumberRest() {
+        while (pos < length) {
+            byte b = buffer[pos];
+            if ((b < '0' || b > '9') && b != '.' && b != 'e' && b != 'E' && b != '+' && b != '-') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private boolean readBoolean() throws IOException {
+        skipWhitespace();
+        if (pos + 4 <= length && buffer[pos] == 't' && buffer[pos + 1] == 'r' && buffer[pos + 2] == 'u'
+                && buffer[pos + 3] == 'e') {
+            pos += 4;
+            return true;
+        }
+        if (pos + 5 <= length && buffer[pos] == 'f' && buffer[pos + 1] == 'a' && buffer[pos + 2] == 'l'
+                && buffer[pos + 3] == 's' && buffer[pos + 4] == 'e') {
+            pos += 5;
+            return false;
+        }
+        if (consumeNull()) {
+            return false;
+        }
+        throw error("Expected a boolean");
+    }
+
+    private void skipValue() throws IOException {
+        skipWhitespace();
+        if (pos >= length) {
+            throw error("Expected a value");
+        }
+        switch (buffer[pos]) {
+            case '{':
+                if (beginObject()) {
+                    do {
+                        readKey();
+                        skipValue();
+                    } while (nextMember());
+                }
+                break;
+            case '[':
+                if (beginArray()) {
+                    do {
+                        skipValue();
+                    } while (nextElement());
+                }
+                break;
+            case '"':
+                pos++;
+                int end = findStringEnd();
+                if (end < 0) {
+                    readEscapedString(pos);
+                } else {
+                    pos = end + 1;
+                }
+                break;
+            case 't':
+            case 'f':
+                readBoolean();
+                break;
+            case 'n':
+                consumeNull();
+                break;
+            default:
+                readInt();
+        }
+    }
+
+    // Results
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public int getMaxTurns() {
+        return maxTurns;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getViewUrl() {
+        return viewUrl;
+    }
+
+    public String getPlayUrl() {
+        return playUrl;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * @return The tiles string of the board, read from the buffer. Valid
+     * until the next read.
+     */
+    public CharSequence getTiles() {
+        return tileString != null ? tileString : tileBytes;
+    }
+
+    /**
+     * @return Heroes of the game, with the shared positions of the board.
+     * Null if the last response could not be read.
+     */
+    public List<GameState.Hero> getHeroes() {
+        return heroes;
+    }
+
+    /**
+     * @return The hero of this bot, or null if the response has none.
+     */
+    public GameState.Hero getMe() {
+        return me;
+    }
+
+    /**
+     * @return True if there is no hero of this bot or it has crashed.
+     */
+    public boolean isCrashed() {
+        return me == null || me.isCrashed();
+    }
+
+    /**
+     * Build the DTO of the last response. Only the first call after a read
+     * builds it.
+     *
+     * @return The game state, with the same heroes as getHeroes and getMe.
+     * Null if nothing was read or the last response could not be read.
+     */
+    public GameState getGameState() {
+        if (gameState == null && heroes != null) {
+            GameState.Board board = new GameState.Board(getTiles().toString(), boardSize);
+            GameState.Game game = new GameState.Game(gameId, turn, maxTurns, heroes, board, finished);
+            gameState = new GameState(game, me, token, viewUrl, playUrl);
+        }
+        return gameState;
+    }
+
+    /**
+     * Fields of one hero. Names are kept between responses so that they are
+     * only created once.
+     */
+    private static class HeroFields {
+
+        boolean present;
+        int id;
+        String name;
+        String userId;
+        int elo;
+        final int[] pos = new int[2];
+        int life;
+        int gold;
+        int mineCount;
+        final int[] spawnPos = new int[2];
+        boolean crashed;
+        String previousName;
+        String previousUserId;
+
+        void clear() {
+            present = true;
+            id = 0;
+            previousName = name;
+            previousUserId = userId;
+            name = null;
+            userId = null;
+            elo = 0;
+            pos[0] = pos[1] = 0;
+            life = 0;
+            gold = 0;
+            mineCount = 0;
+            spawnPos[0] = spawnPos[1] = 0;
+            crashed = false;
+        }
+
+        GameState.Hero toHero(Positions positions) {
+            return new GameState.Hero(id, name, userId, elo, position(positions, pos), life, gold, mineCount,
+                    position(positions, spawnPos), crashed);
+        }
+
+        private static GameState.Position position(Positions positions, int[] xy) {
+            int size = positions.getSize();
+            if (xy[0] >= 0 && xy[0] < size && xy[1] >= 0 && xy[1] < size) {
+                return positions.get(xy[0], xy[1]);
+            }
+            return new GameState.Position(xy[0], xy[1]);
+        }
+    }
+
+    /**
+     * ASCII characters of the buffer, without copying them.
+     */
+    private static final class ByteSlice implements CharSequence {
+
+        private byte[] bytes;
+        private int start;
+        private int length;
+
+        void set(byte[] bytes, int start, int length) {
+            this.bytes = bytes;
+            this.start = start;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[start + index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, start, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -4,25 +4,35 @@ import com.brianstempin.vindiniumclient.dto.GameState;
 
 /**
  * Represents a mine on the map
+ * <p>
+ * Mines are shared by the states of the turns they did not change in, so a
+ * mine keeps the id of its owner rather than the hero of one turn. Look the
+ * hero up in the state at hand.
  */
 public class Mine {
 
-    // Mines don't move, but the owners change
+    // Mines don't move, but the owners change. Then a new Mine replaces this one.
     private final GameState.Position position;
-    private GameState.Hero owner;
+    private final int ownerId;
 
-    public Mine(GameState.Position position, GameState.Hero owner) {
+    /**
+     * @param position Position of the mine.
+     * @param ownerId Id of the hero that owns the mine, or
+     * TileDecoder.NO_OWNER.
+     */
+    public Mine(GameState.Position position, int ownerId) {
         this.position = position;
-        this.owner = owner;
+        this.ownerId = ownerId;
     }
 
     public GameState.Position getPosition() {
         return position;
     }
 
-    public GameState.Hero getOwner() {
-        return owner;
+    /**
+     * @return Id of the hero that owns the mine, or TileDecoder.NO_OWNER.
+     */
+    public int getOwnerId() {
+        return ownerId;
     }
-
-    public void setOwner(GameState.Hero hero) { this.owner = hero; }
 }
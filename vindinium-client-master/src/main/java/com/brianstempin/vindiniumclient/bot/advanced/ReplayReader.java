@@ -0,0 +1,289 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import com.brianstempin.vindiniumclient.dto.GameState;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads replays written by ReplayWriter.
+ * <p>
+ * The file is mapped to memory and only its header and index are read when it
+ * is opened. The state of a turn is decoded from the last key record before
+ * it, at most ReplayWriter.KEY_INTERVAL records, however long the game was.
+ * The states are GameState DTOs like the server sends, without token and play
+ * URL, so they can be given to AdvancedGameState and the bots again.
+ * <p>
+ * Reading states is thread safe.
+ */
+public class ReplayReader implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+
+    private final int size;
+    private final int maxTurns;
+    private final int meId;
+    private final String gameId;
+    private final String viewUrl;
+    private final int heroCount;
+    private final int[] heroIds;
+    private final String[] names;
+    private final String[] userIds;
+    private final int[] elos;
+    private final int[] spawnXs;
+    private final int[] spawnYs;
+
+    private final int[] offsets;
+    private final int recordCount;
+
+    /**
+     * @param file Replay to read.
+     * @throws IOException If the file cannot be read or is not a replay.
+     */
+    public ReplayReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer in = data.duplicate();
+            if (in.remaining() < 8 || in.getInt() != ReplayWriter.MAGIC) {
+                throw new IOException(file + " is not a replay");
+            }
+            int version = in.getShort();
+            if (version != ReplayWriter.VERSION) {
+                throw new IOException(file + " is a replay of version " + version);
+            }
+            size = in.getShort();
+            maxTurns = in.getInt();
+            meId = in.get();
+            gameId = readUTF(in);
+            viewUrl = readUTF(in);
+            heroCount = in.get();
+            heroIds = new int[heroCount];
+            names = new String[heroCount];
+            userIds = new String[heroCount];
+            elos = new int[heroCount];
+            spawnXs = new int[heroCount];
+            spawnYs = new int[heroCount];
+            for (int h = 0; h < heroCount; h++) {
+                heroIds[h] = in.get();
+                names[h] = readUTF(in);
+                userIds[h] = readUTF(in);
+                if (userIds[h].isEmpty()) {
+                    userIds[h] = null;
+                }
+                elos[h] = in.getInt();
+                spawnXs[h] = in.get();
+                spawnYs[h] = in.get();
+            }
+            int firstRecord = in.position();
+
+            int limit = data.limit();
+            if (limit - firstRecord >= ReplayWriter.TRAILER_BYTES
+                    && data.getInt(limit - 4) == ReplayWriter.MAGIC) {
+                recordCount = data.getInt(limit - ReplayWriter.TRAILER_BYTES);
+                int indexOffset = data.getInt(limit - 8);
+                offsets = new int[recordCount];
+                for (int i = 0; i < recordCount; i++) {
+                    offsets[i] = data.getInt(indexOffset + 4 * i);
+                }
+            } else {
+                offsets = scan(firstRecord);
+                recordCount = offsets.length;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Cannot read replay " + file, e);
+        }
+    }
+
+    /**
+     * Find the records of a file without an index. A record cut off at the
+     * end is left out.
+     */
+    private int[] scan(int firstRecord) {
+        int[] found = new int[512];
+        int count = 0;
+        byte[] tiles = new byte[size * size];
+        int[][] heroes = new int[heroCount][ReplayWriter.HERO_FIELDS];
+        int offset = firstRecord;
+        try {
+            while (offset < data.limit()) {
+                int next = apply(offset, tiles, heroes);
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, 2 * count);
+                }
+                found[count++] = offset;
+                offset = next;
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            // Cut off
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * @return Number of turns recorded.
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @param record 0 to getRecordCount() - 1.
+     * @return Turn of the game of the record, as the server counts them.
+     */
+    public int getTurn(int record) {
+        return data.getInt(offsets[record] + 1);
+    }
+
+    /**
+     * @param turn Turn as the server counts them.
+     * @return The record of the turn, or -1 if it was not recorded.
+     */
+    public int findRecord(int turn) {
+        int low = 0;
+        int high = recordCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int t = getTurn(middle);
+            if (t < turn) {
+                low = middle + 1;
+            } else if (t > turn) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param record 0 to getRecordCount() - 1.
+     * @return The state of the game as it was received.
+     */
+    public GameState getGameState(int record) {
+        if (record < 0 || record >= recordCount) {
+            throw new IndexOutOfBoundsException("No record " + record + " of " + recordCount);
+        }
+        int key = record;
+        while (data.get(offsets[key]) != ReplayWriter.KEY) {
+            key--;
+        }
+        byte[] tiles = new byte[size * size];
+        int[][] fields = new int[heroCount][ReplayWriter.HERO_FIELDS];
+        for (int i = key; i <= record; i++) {
+            apply(offsets[i], tiles, fields);
+        }
+
+        StringBuilder text = new StringBuilder(2 * tiles.length);
+        for (byte tile : tiles) {
+            ReplayWriter.decodeTile(tile, text);
+        }
+        List<GameState.Hero> heroes = new ArrayList<>(heroCount);
+        GameState.Hero me = null;
+        for (int h = 0; h < heroCount; h++) {
+            int[] f = fields[h];
+            GameState.Hero hero = new GameState.Hero(heroIds[h], names[h], userIds[h], elos[h],
+                    new GameState.Position(f[0], f[1]), f[2], f[3], f[4],
+                    new GameState.Position(spawnXs[h], spawnYs[h]), f[5] != 0);
+            heroes.add(hero);
+            if (heroIds[h] == meId) {
+                me = hero;
+            }
+        }
+        int offset = offsets[record];
+        GameState.Game game = new GameState.Game(gameId, data.getInt(offset + 1), maxTurns, heroes,
+                new GameState.Board(text.toString(), size), data.get(offset + 5) != 0);
+        return new GameState(game, me, null, viewUrl, null);
+    }
+
+    /**
+     * Apply one record to the tiles and hero fields.
+     *
+     * @return Offset of the next record.
+     */
+    private int apply(int offset, byte[] tiles, int[][] heroes) {
+        ByteBuffer in = data.duplicate();
+        in.position(offset);
+        boolean key = in.get() == ReplayWriter.KEY;
+        in.position(offset + 6);
+        if (key) {
+            in.get(tiles);
+        } else {
+            int changed = readVarint(in);
+            int tile = 0;
+            for (int i = 0; i < changed; i++) {
+                tile += readVarint(in);
+                tiles[tile] = in.get();
+            }
+        }
+        for (int[] fields : heroes) {
+            if (key) {
+                for (int f = 0; f < ReplayWriter.HERO_FIELDS - 1; f++) {
+                    fields[f] = readVarint(in);
+                }
+                fields[ReplayWriter.HERO_FIELDS - 1] = in.get();
+            } else {
+                int mask = in.get();
+                for (int f = 0; f < ReplayWriter.HERO_FIELDS; f++) {
+                    if ((mask & (1 << f)) != 0) {
+                        fields[f] = readVarint(in);
+                    }
+                }
+            }
+        }
+        return in.position();
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Read a string written by DataOutput.writeUTF.
+     */
+    private static String readUTF(ByteBuffer in) throws IOException {
+        int length = in.getShort() & 0xffff;
+        byte[] bytes = new byte[length + 2];
+        bytes[0] = (byte) (length >>> 8);
+        bytes[1] = (byte) length;
+        in.get(bytes, 2, length);
+        return new DataInputStream(new ByteArrayInputStream(bytes)).readUTF();
+    }
+
+    public int getBoardSize() {
+        return size;
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public String getViewUrl() {
+        return viewUrl;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,397 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import com.brianstempin.vindiniumclient.dto.GameState;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Records every game state of a game in a compact binary file, so past turns
+ * can be played again for profiling and regression tests. ReplayReader reads
+ * the files.
+ * <p>
+ * The file starts with a header of what does not change during the game:
+ * <pre>
+ * int magic, short version, short size, int maxTurns, byte my hero id,
+ * string gameId, string viewUrl,
+ * byte heroCount, per hero: byte id, string name, string userId, int elo, byte spawn x, byte spawn y
+ * </pre>
+ * Strings are written as by DataOutput.writeUTF, a null userId as an empty
+ * string. A record of each turn follows:
+ * <pre>
+ * byte kind, int turn, byte finished,
+ * KEY:   byte[size * size] tiles, per hero: varint x, y, life, gold, mineCount, byte crashed
+ * DELTA: varint changed tiles, per tile: varint index gap, byte tile,
+ *        per hero: byte mask of changed fields, varint per changed field
+ * </pre>
+ * Tiles are one byte each, see encodeTile. Every KEY_INTERVAL records the
+ * full board is written again, so a turn is found from the last key record
+ * before it. The file ends with an index:
+ * <pre>
+ * int[recordCount] offsets of the records, int recordCount, int offset of the index, int magic
+ * </pre>
+ * A file without the index, of a game that was cut off, can still be read
+ * from the start.
+ * <p>
+ * The game thread only copies the tiles of the state. Comparing and writing
+ * happens on one background thread shared by every writer, so recording adds
+ * no time to a turn. Use one writer per game.
+ */
+public class ReplayWriter implements Closeable {
+
+    /**
+     * System property with the directory of the replays. Empty turns
+     * recording off.
+     */
+    public static final String DIRECTORY_PROPERTY = "vindinium.replays";
+    public static final String DEFAULT_DIRECTORY = "replays";
+
+    static final int MAGIC = 0x56525031;
+    static final int VERSION = 1;
+    static final byte KEY = 0;
+    static final byte DELTA = 1;
+    static final int KEY_INTERVAL = 64;
+    static final int TRAILER_BYTES = 12;
+    /**
+     * Fields of a hero in a record: x, y, life, gold, mineCount, crashed. Bit
+     * f of the mask of a DELTA record is set if field f changed.
+     */
+    static final int HERO_FIELDS = 6;
+
+    private static final Logger logger = LogManager.getLogger(ReplayWriter.class);
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "replay-writer");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private final Path file;
+    private final int size;
+
+    // Only used on the writer thread
+    private DataOutputStream out;
+    private int offset;
+    private int[] offsets = new int[512];
+    private int recordCount;
+    private byte[] previousTiles;
+    private int[][] previousHeroes;
+    private boolean failed;
+
+    private ReplayWriter(Path file, int size) {
+        this.file = file;
+        this.size = size;
+    }
+
+    /**
+     * Start recording a game, with its first state.
+     *
+     * @param first Reader holding the first state of the game.
+     * @return The writer, or null if recording is turned off with the system
+     * property.
+     */
+    public static ReplayWriter forGame(GameStateReader first) {
+        String directory = System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY);
+        if (directory.isEmpty() || first.getHeroes() == null) {
+            return null;
+        }
+        String name = first.getGameId().replaceAll("[^A-Za-z0-9_-]", "_") + "-" + System.currentTimeMillis()
+                + ".replay";
+        ReplayWriter writer = new ReplayWriter(Paths.get(directory, name), first.getBoardSize());
+        final Header header = new Header(first);
+        writer.submit(new Task() {
+            @Override
+            public void run(ReplayWriter w) throws IOException {
+                w.writeHeader(header);
+            }
+        });
+        writer.record(first);
+        return writer;
+    }
+
+    /**
+     * Record the state the reader holds. Only copies the tiles, the rest is
+     * done in the background.
+     */
+    public void record(GameStateReader reader) {
+        if (reader.getHeroes() == null) {
+            return;
+        }
+        final byte[] tiles = new byte[size * size];
+        CharSequence text = reader.getTiles();
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = encodeTile(text.charAt(2 * i), text.charAt(2 * i + 1));
+        }
+        final int turn = reader.getTurn();
+        final boolean finished = reader.isFinished();
+        final List<GameState.Hero> heroes = reader.getHeroes();
+        submit(new Task() {
+            @Override
+            public void run(ReplayWriter w) throws IOException {
+                w.writeRecord(turn, finished, tiles, heroes);
+            }
+        });
+    }
+
+    /**
+     * Write the index and close the file. Waits for the records still being
+     * written, so call it after the game.
+     */
+    @Override
+    public void close() {
+        Future<?> done = submit(new Task() {
+            @Override
+            public void run(ReplayWriter w) throws IOException {
+                w.writeIndex();
+            }
+        });
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Could not finish replay {}", file, e.getCause());
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private interface Task {
+
+        void run(ReplayWriter writer) throws IOException;
+    }
+
+    private Future<?> submit(final Task task) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (failed) {
+                    return;
+                }
+                try {
+                    task.run(ReplayWriter.this);
+                } catch (IOException e) {
+                    logger.warn("Could not write replay {}, stopping recording", file, e);
+                    failed = true;
+                    closeQuietly();
+                }
+            }
+        });
+    }
+
+    /**
+     * What does not change during the game, copied on the game thread.
+     */
+    private static final class Header {
+
+        final int maxTurns;
+        final int meId;
+        final String gameId;
+        final String viewUrl;
+        final List<GameState.Hero> heroes;
+
+        Header(GameStateReader reader) {
+            maxTurns = reader.getMaxTurns();
+            meId = reader.getMe() == null ? 0 : reader.getMe().getId();
+            gameId = reader.getGameId();
+            viewUrl = reader.getViewUrl();
+            heroes = reader.getHeroes();
+        }
+    }
+
+    private void writeHeader(Header header) throws IOException {
+        Path directory = file.getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(size);
+        out.writeInt(header.maxTurns);
+        out.writeByte(header.meId);
+        out.writeUTF(header.gameId == null ? "" : header.gameId);
+        out.writeUTF(header.viewUrl == null ? "" : header.viewUrl);
+        out.writeByte(header.heroes.size());
+        for (GameState.Hero h : header.heroes) {
+            out.writeByte(h == null ? 0 : h.getId());
+            out.writeUTF(h == null || h.getName() == null ? "" : h.getName());
+            out.writeUTF(h == null || h.getUserId() == null ? "" : h.getUserId());
+            out.writeInt(h == null ? 0 : h.getElo());
+            out.writeByte(h == null ? 0 : h.getSpawnPos().getX());
+            out.writeByte(h == null ? 0 : h.getSpawnPos().getY());
+        }
+        previousHeroes = new int[header.heroes.size()][];
+        offset = out.size();
+    }
+
+    private void writeRecord(int turn, boolean finished, byte[] tiles, List<GameState.Hero> heroes)
+            throws IOException {
+        if (recordCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * recordCount);
+        }
+        offsets[recordCount] = offset;
+        boolean key = recordCount % KEY_INTERVAL == 0;
+        out.writeByte(key ? KEY : DELTA);
+        out.writeInt(turn);
+        out.writeByte(finished ? 1 : 0);
+
+        if (key) {
+            out.write(tiles);
+        } else {
+            int changed = 0;
+            for (int i = 0; i < tiles.length; i++) {
+                if (tiles[i] != previousTiles[i]) {
+                    changed++;
+                }
+            }
+            writeVarint(changed);
+            int last = 0;
+            for (int i = 0; i < tiles.length; i++) {
+                if (tiles[i] != previousTiles[i]) {
+                    writeVarint(i - last);
+                    out.writeByte(tiles[i]);
+                    last = i;
+                }
+            }
+        }
+
+        for (int h = 0; h < previousHeroes.length; h++) {
+            int[] fields = h < heroes.size() ? heroFields(heroes.get(h)) : new int[HERO_FIELDS];
+            int[] before = previousHeroes[h];
+            if (key) {
+                for (int f = 0; f < HERO_FIELDS - 1; f++) {
+                    writeVarint(fields[f]);
+                }
+                out.writeByte(fields[HERO_FIELDS - 1]);
+            } else {
+                int mask = 0;
+                for (int f = 0; f < HERO_FIELDS; f++) {
+                    if (fields[f] != before[f]) {
+                        mask |= 1 << f;
+                    }
+                }
+                out.writeByte(mask);
+                for (int f = 0; f < HERO_FIELDS; f++) {
+                    if ((mask & (1 << f)) != 0) {
+                        writeVarint(fields[f]);
+                    }
+                }
+            }
+            previousHeroes[h] = fields;
+        }
+        previousTiles = tiles;
+        recordCount++;
+        offset = out.size();
+    }
+
+    /**
+     * @return x, y, life, gold, mineCount and crashed as 0 or 1, all 0 for a
+     * missing hero.
+     */
+    private static int[] heroFields(GameState.Hero h) {
+        if (h == null) {
+            return new int[HERO_FIELDS];
+        }
+        return new int[]{h.getPos().getX(), h.getPos().getY(), h.getLife(), h.getGold(), h.getMineCount(),
+            h.isCrashed() ? 1 : 0};
+    }
+
+    private void writeIndex() throws IOException {
+        if (out == null) {
+            return;
+        }
+        int indexOffset = out.size();
+        for (int i = 0; i < recordCount; i++) {
+            out.writeInt(offsets[i]);
+        }
+        out.writeInt(recordCount);
+        out.writeInt(indexOffset);
+        out.writeInt(MAGIC);
+        out.close();
+        out = null;
+        logger.info("Replay of {} turns written to {}, {} bytes", recordCount, file, Files.size(file));
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // Already failed
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * @return One byte for the two characters of a tile: 0 air, 1 wall, 2
+     * pub, 3 free mine, 4 to 7 mine of hero 1 to 4, 8 to 11 hero 1 to 4.
+     */
+    static byte encodeTile(char a, char b) {
+        switch (a) {
+            case '#':
+                return 1;
+            case '[':
+                return 2;
+            case '$':
+                return (byte) (b == '-' ? 3 : 3 + (b - '0'));
+            case '@':
+                return (byte) (7 + (b - '0'));
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Append the two characters of a tile encoded by encodeTile.
+     */
+    static void decodeTile(byte code, StringBuilder tiles) {
+        switch (code) {
+            case 0:
+                tiles.append("  ");
+                break;
+            case 1:
+                tiles.append("##");
+                break;
+            case 2:
+                tiles.append("[]");
+                break;
+            case 3:
+                tiles.append("$-");
+                break;
+            default:
+                if (code < 8) {
+                    tiles.append('$').append((char) ('0' + code - 3));
+                } else {
+                    tiles.append('@').append((char) ('0' + code - 7));
+                }
+        }
+    }
+}
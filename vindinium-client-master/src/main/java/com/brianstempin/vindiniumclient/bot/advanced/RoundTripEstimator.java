@@ -0,0 +1,74 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out how long a bot can think about a move from the round trip times
+ * of the previous turns. AdvancedBotRunner logs the budget and warns about
+ * moves that took longer.
+ * <p>
+ * The server starts the clock when it sends the game state and stops it when
+ * the move arrives, so the network takes part of the time limit. A round
+ * trip as measured by the runner also includes the time the server waits for
+ * the other bots, which can be much longer than the network. The shortest
+ * round trip of the last turns is the best guess of the network alone. The
+ * budget is the time limit minus that guess and a safety margin for jitter.
+ */
+public class RoundTripEstimator {
+
+    /**
+     * Turns the shortest round trip is taken from.
+     */
+    private static final int WINDOW = 20;
+
+    private final long timeLimitNanos;
+    private final long marginNanos;
+    private final long minBudgetNanos;
+    private final long[] roundTrips = new long[WINDOW];
+    private int count;
+
+    /**
+     * @param timeLimit Time the server gives for a move.
+     * @param margin Time kept in reserve for jitter.
+     * @param minBudget Smallest budget ever given, the bot needs some time.
+     * @param unit Unit of the times.
+     */
+    public RoundTripEstimator(long timeLimit, long margin, long minBudget, TimeUnit unit) {
+        this.timeLimitNanos = unit.toNanos(timeLimit);
+        this.marginNanos = unit.toNanos(margin);
+        this.minBudgetNanos = unit.toNanos(minBudget);
+    }
+
+    /**
+     * Record the time from sending a move to receiving the next game state.
+     *
+     * @param nanos Round trip time in nanoseconds.
+     */
+    public void record(long nanos) {
+        roundTrips[count++ % WINDOW] = nanos;
+    }
+
+    /**
+     * @return Shortest round trip of the last turns in nanoseconds, or -1 if
+     * there are none yet.
+     */
+    public long getShortestRoundTrip() {
+        if (count == 0) {
+            return -1;
+        }
+        long shortest = Long.MAX_VALUE;
+        for (int i = 0; i < Math.min(count, WINDOW); i++) {
+            shortest = Math.min(shortest, roundTrips[i]);
+        }
+        return shortest;
+    }
+
+    /**
+     * @return Time the bot can think about the next move in nanoseconds. Before
+     * the first round trip the network is assumed to take half the time limit.
+     */
+    public long getBudgetNanos() {
+        long network = count == 0 ? timeLimitNanos / 2 : getShortestRoundTrip();
+        return Math.max(minBudgetNanos, timeLimitNanos - network - marginNanos);
+    }
+}
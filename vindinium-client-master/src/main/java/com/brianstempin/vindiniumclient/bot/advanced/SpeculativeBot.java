@@ -0,0 +1,26 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+
+/**
+ * AdvancedBot that can prepare its next turn while its move is on the way to
+ * the server.
+ * <p>
+ * AdvancedBotRunner calls speculate just before it sends the move and then
+ * waits hundreds of milliseconds for the next game state. The bot can guess
+ * that state, for example by assuming the move succeeds and nobody else
+ * moves, and start working on it in the background. The next call to move
+ * has to check the guess against the real state and must give the same
+ * answer whether the guess was right or not.
+ */
+public interface SpeculativeBot extends AdvancedBot {
+
+    /**
+     * Start preparing the next turn. Must return quickly, the move is sent
+     * after this returns.
+     *
+     * @param gameState State the move was decided on.
+     * @param move The move about to be sent.
+     */
+    public void speculate(AdvancedGameState gameState, BotMove move);
+}
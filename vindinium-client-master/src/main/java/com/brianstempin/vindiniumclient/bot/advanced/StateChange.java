@@ -0,0 +1,73 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+/**
+ * Something that changed on the board since the previous turn.
+ */
+public class StateChange {
+
+    public enum Type {
+        /**
+         * A hero walked to a neighbouring tile.
+         */
+        HERO_MOVED,
+        /**
+         * A hero was killed and came back at its spawn point.
+         */
+        HERO_RESPAWNED,
+        /**
+         * A mine got a new owner.
+         */
+        MINE_CAPTURED
+    }
+
+    private final Type type;
+    private final int heroId;
+    private final int tile;
+    private final int previous;
+
+    /**
+     * @param type What changed.
+     * @param heroId Hero that moved, or new owner of the mine.
+     * @param tile Tile index the hero is on now, or of the mine.
+     * @param previous Tile index the hero was on, or id of the previous owner
+     * of the mine.
+     */
+    public StateChange(Type type, int heroId, int tile, int previous) {
+        this.type = type;
+        this.heroId = heroId;
+        this.tile = tile;
+        this.previous = previous;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return Hero that moved, or id of the new owner of the mine.
+     * TileDecoder.NO_OWNER if nobody owns the mine any more.
+     */
+    public int getHeroId() {
+        return heroId;
+    }
+
+    /**
+     * @return Tile index the hero is on now, or tile index of the mine.
+     */
+    public int getTile() {
+        return tile;
+    }
+
+    /**
+     * @return Tile index the hero was on, or id of the previous owner of the
+     * mine.
+     */
+    public int getPrevious() {
+        return previous;
+    }
+
+    @Override
+    public String toString() {
+        return type + " hero " + heroId + " tile " + tile + " previous " + previous;
+    }
+}
@@ -0,0 +1,326 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps the board graph and terrain distances of the boards seen before, in
+ * memory and in files, so a board that comes back does not have to be
+ * analysed again.
+ * <p>
+ * Boards are keyed by their terrain: the size and the type of every tile.
+ * Boards with the same terrain get the same TileGraph instance while they are
+ * in memory, which also lets them share everything that is cached per graph.
+ * The graph is built as soon as a board is seen. The distances take
+ * milliseconds on large boards, so they are only read or computed when
+ * something first asks for them, and then shared like the graph. Each file
+ * holds one terrain and its tables:
+ * <pre>
+ * int magic, int version, int size, int rowCount,
+ * byte[size * size] tile types,
+ * short[rowCount * rowCount] distances,
+ * byte[rowCount * rowCount] first steps
+ * </pre>
+ * The tile types in the file are compared with the board, so a hash
+ * collision or a file of another version is just a miss. Files are written to
+ * a temporary file and moved in place, so several bots can share a
+ * directory.
+ */
+public class TerrainCache {
+
+    /**
+     * System property with the directory of the files. Unset or empty keeps
+     * the cache in memory only.
+     */
+    public static final String DIRECTORY_PROPERTY = "vindinium.terrainCache";
+
+    private static final int MAGIC = 0x56544443;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    /**
+     * Terrains kept in memory. A 28x28 board takes about 1 MB.
+     */
+    private static final int MEMORY_ENTRIES = 8;
+
+    private static final Logger logger = LogManager.getLogger(TerrainCache.class);
+    private static TerrainCache defaultCache;
+
+    /**
+     * Directory of the files, null if there are none.
+     */
+    private final Path directory;
+    private final Map<Terrain, Entry> recent = new LinkedHashMap<Terrain, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Terrain, Entry> eldest) {
+            return size() > MEMORY_ENTRIES;
+        }
+    };
+    private int hits;
+    private int fileHits;
+    private int misses;
+
+    /**
+     * @param directory Directory of the files, null to keep the cache in
+     * memory only.
+     */
+    public TerrainCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return The cache of the directory named by DIRECTORY_PROPERTY, in
+     * memory only if it names none.
+     */
+    public static synchronized TerrainCache getDefault() {
+        if (defaultCache == null) {
+            String directory = System.getProperty(DIRECTORY_PROPERTY, "");
+            defaultCache = new TerrainCache(directory.isEmpty() ? null : Paths.get(directory));
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Returns the graph of a board. Boards with the same terrain get the same
+     * instance while it is in memory.
+     *
+     * @param size Width and height of the board.
+     * @param tileTypes Type of every tile by tile index. Heroes stand on AIR.
+     * @return Graph of the board.
+     */
+    public TileGraph getGraph(int size, byte[] tileTypes) {
+        Terrain terrain = new Terrain(size, tileTypes);
+        synchronized (recent) {
+            Entry entry = recent.get(terrain);
+            if (entry == null) {
+                entry = new Entry(new TileGraph(size, tileTypes));
+                recent.put(terrain, entry);
+            }
+            return entry.graph;
+        }
+    }
+
+    /**
+     * Returns the terrain distances of a graph. They are read from memory or
+     * from a file if the terrain was analysed before, otherwise computed and
+     * stored.
+     *
+     * @param graph Graph of the board, from getGraph.
+     * @return Terrain distances of the board.
+     */
+    public TerrainDistances getDistances(TileGraph graph) {
+        Terrain terrain = new Terrain(graph);
+        synchronized (recent) {
+            Entry entry = recent.get(terrain);
+            if (entry != null && entry.distances != null && entry.graph == graph) {
+                hits++;
+                return entry.distances;
+            }
+        }
+
+        TerrainDistances distances = null;
+        Path file = directory == null ? null : directory.resolve(terrain.fileName());
+        if (file != null && Files.isRegularFile(file)) {
+            try {
+                distances = read(file, terrain, graph);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not read terrain cache file {}", file, e);
+            }
+        }
+        boolean fromFile = distances != null;
+        if (!fromFile) {
+            distances = new TerrainDistances(graph);
+            if (file != null) {
+                try {
+                    write(file, terrain, distances);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Could not write terrain cache file {}", file, e);
+                }
+            }
+        }
+
+        synchronized (recent) {
+            Entry entry = recent.get(terrain);
+            if (entry != null && entry.distances != null && entry.graph == graph) {
+                // Another thread got here first, keep the instances shared
+                hits++;
+                return entry.distances;
+            }
+            if (fromFile) {
+                fileHits++;
+            } else {
+                misses++;
+            }
+            if (entry == null) {
+                entry = new Entry(graph);
+                recent.put(terrain, entry);
+            }
+            if (entry.graph == graph) {
+                entry.distances = distances;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Read a file into memory. The tables are copied out of it, so it is read
+     * whole rather than mapped.
+     *
+     * @return The tables, or null if the file is for another terrain or
+     * version.
+     */
+    private static TerrainDistances read(Path file, Terrain terrain, TileGraph graph) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != terrain.size) {
+            return null;
+        }
+        int rowCount = buffer.getInt();
+        int pairs = rowCount * rowCount;
+        if (buffer.remaining() != terrain.tileTypes.length + 3L * pairs) {
+            return null;
+        }
+        byte[] tileTypes = new byte[terrain.tileTypes.length];
+        buffer.get(tileTypes);
+        if (!Arrays.equals(tileTypes, terrain.tileTypes)) {
+            return null;
+        }
+        short[] distances = new short[pairs];
+        buffer.asShortBuffer().get(distances);
+        buffer.position(buffer.position() + 2 * pairs);
+        byte[] firstSteps = new byte[pairs];
+        buffer.get(firstSteps);
+        return new TerrainDistances(graph, distances, firstSteps);
+    }
+
+    private static void write(Path file, Terrain terrain, TerrainDistances distances) throws IOException {
+        Files.createDirectories(file.getParent());
+        int rowCount = distances.getRowCount();
+        int pairs = rowCount * rowCount;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + terrain.tileTypes.length + 3 * pairs);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(terrain.size).putInt(rowCount);
+        buffer.put(terrain.tileTypes);
+        buffer.asShortBuffer().put(distances.getDistanceTable());
+        buffer.position(buffer.position() + 2 * pairs);
+        buffer.put(distances.getFirstStepTable());
+        buffer.flip();
+
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * @return Terrain distances found in memory.
+     */
+    public int getHits() {
+        synchronized (recent) {
+            return hits;
+        }
+    }
+
+    /**
+     * @return Terrain distances read from a file.
+     */
+    public int getFileHits() {
+        synchronized (recent) {
+            return fileHits;
+        }
+    }
+
+    /**
+     * @return Terrain distances that had to be computed.
+     */
+    public int getMisses() {
+        synchronized (recent) {
+            return misses;
+        }
+    }
+
+    /**
+     * Graph of a terrain, and its distances once they are needed.
+     */
+    private static class Entry {
+
+        private final TileGraph graph;
+        private TerrainDistances distances;
+
+        Entry(TileGraph graph) {
+            this.graph = graph;
+        }
+    }
+
+    /**
+     * Key of the cache: the size and tile types of a board.
+     */
+    private static class Terrain {
+
+        private final int size;
+        private final byte[] tileTypes;
+        private final long hash;
+
+        Terrain(TileGraph graph) {
+            this(graph.getSize(), tileTypes(graph));
+        }
+
+        Terrain(int size, byte[] tileTypes) {
+            this.size = size;
+            this.tileTypes = tileTypes.clone();
+            // 64 bit FNV-1a
+            long h = 0xcbf29ce484222325L ^ size;
+            for (byte type : tileTypes) {
+                h = (h ^ type) * 0x100000001b3L;
+            }
+            this.hash = h;
+        }
+
+        private static byte[] tileTypes(TileGraph graph) {
+            byte[] tileTypes = new byte[graph.getTileCount()];
+            for (int tile = 0; tile < tileTypes.length; tile++) {
+                tileTypes[tile] = graph.getTileType(tile);
+            }
+            return tileTypes;
+        }
+
+        String fileName() {
+            return String.format("terrain-%d-%016x.bin", size, hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Terrain)) {
+                return false;
+            }
+            Terrain other = (Terrain) o;
+            return hash == other.hash && size == other.size && Arrays.equals(tileTypes, other.tileTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+/**
+ * Reads the tiles string of a board without creating any strings.
+ * <p>
+ * Every tile is two characters: "##" is a wall, "[]" a pub, "$-" a mine
+ * without an owner, "$1" to "$4" a mine owned by that hero, "@1" to "@4" a
+ * hero and two spaces an empty tile. Tile t starts at character 2 * t.
+ */
+public final class TileDecoder {
+
+    /**
+     * Owner of mines nobody owns and of tiles that are not mines.
+     */
+    public static final byte NO_OWNER = 0;
+
+    private TileDecoder() {
+    }
+
+    /**
+     * Decode every tile of a board.
+     *
+     * @param tiles Tiles of the board, two characters per tile.
+     * @param tileTypes Receives the TileGraph type of each tile.
+     * @param mineOwners Receives the hero id that owns each mine, NO_OWNER for
+     * other tiles.
+     */
+    public static void decode(CharSequence tiles, byte[] tileTypes, byte[] mineOwners) {
+        for (int tile = 0; tile < tileTypes.length; tile++) {
+            tileTypes[tile] = decodeType(tiles, tile);
+            mineOwners[tile] = tileTypes[tile] == TileGraph.MINE ? decodeMineOwner(tiles, tile) : NO_OWNER;
+        }
+    }
+
+    /**
+     * @param tiles Tiles of the board.
+     * @param tile Tile index.
+     * @return TileGraph type of the tile. Heroes stand on AIR.
+     */
+    public static byte decodeType(CharSequence tiles, int tile) {
+        switch (tiles.charAt(2 * tile)) {
+            case '#':
+                return TileGraph.WALL;
+            case '$':
+                return TileGraph.MINE;
+            case '[':
+                return TileGraph.PUB;
+            default:
+                return TileGraph.AIR;
+        }
+    }
+
+    /**
+     * @param tiles Tiles of the board.
+     * @param tile Tile index of a mine.
+     * @return Id of the hero that owns the mine, or NO_OWNER.
+     */
+    public static byte decodeMineOwner(CharSequence tiles, int tile) {
+        char owner = tiles.charAt(2 * tile + 1);
+        if (owner == '-') {
+            return NO_OWNER;
+        }
+        if (owner < '0' || owner > '9') {
+            throw new IllegalArgumentException("Bad mine owner '" + owner + "' in tile " + tile);
+        }
+        return (byte) (owner - '0');
+    }
+}
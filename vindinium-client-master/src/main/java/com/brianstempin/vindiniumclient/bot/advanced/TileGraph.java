@@ -0,0 +1,168 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+import com.brianstempin.vindiniumclient.dto.GameState;
+
+/**
+ * Compact, array based view of the board for code that walks the graph a lot.
+ * <p>
+ * Every tile has an index, x * size + y. Neighbours are stored in compressed
+ * sparse row form: the neighbours of tile t are neighbour(k) for k from
+ * firstNeighbour(t) to firstNeighbour(t + 1) - 1, in the order north, south,
+ * west, east. Walls have no neighbours and are no one's neighbour. Mines and
+ * pubs do have neighbours, but they cannot be walked through, so searches
+ * should not continue from them (see isPassable).
+ * <p>
+ * Instances never change after construction.
+ */
+public class TileGraph {
+
+    public static final byte WALL = 0;
+    public static final byte AIR = 1;
+    public static final byte MINE = 2;
+    public static final byte PUB = 3;
+
+    private final int size;
+    private final byte[] tileTypes;
+    private final int[] neighbourOffsets;
+    private final int[] neighbours;
+
+    /**
+     * @param size Width and height of the board.
+     * @param tileTypes Type of every tile by tile index. Heroes stand on AIR.
+     */
+    public TileGraph(int size, byte[] tileTypes) {
+        this.size = size;
+        this.tileTypes = tileTypes.clone();
+        this.neighbourOffsets = new int[tileTypes.length + 1];
+
+        int[] buffer = new int[4 * tileTypes.length];
+        int count = 0;
+        for (int tile = 0; tile < tileTypes.length; tile++) {
+            neighbourOffsets[tile] = count;
+            if (tileTypes[tile] == WALL) {
+                continue;
+            }
+            int x = getX(tile);
+            int y = getY(tile);
+            // Same order as the adjacency lists of the vertices
+            if (x > 0 && tileTypes[tile - size] != WALL) {
+                buffer[count++] = tile - size;
+            }
+            if (x < size - 1 && tileTypes[tile + size] != WALL) {
+                buffer[count++] = tile + size;
+            }
+            if (y > 0 && tileTypes[tile - 1] != WALL) {
+                buffer[count++] = tile - 1;
+            }
+            if (y < size - 1 && tileTypes[tile + 1] != WALL) {
+                buffer[count++] = tile + 1;
+            }
+        }
+        neighbourOffsets[tileTypes.length] = count;
+        this.neighbours = new int[count];
+        System.arraycopy(buffer, 0, neighbours, 0, count);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getTileCount() {
+        return tileTypes.length;
+    }
+
+    public int tileIndex(int x, int y) {
+        return x * size + y;
+    }
+
+    public int tileIndex(GameState.Position position) {
+        return position.getX() * size + position.getY();
+    }
+
+    /**
+     * @return True if the position is on the board.
+     */
+    public boolean contains(GameState.Position position) {
+        return position.getX() >= 0 && position.getX() < size && position.getY() >= 0 && position.getY() < size;
+    }
+
+    public int getX(int tile) {
+        return tile / size;
+    }
+
+    public int getY(int tile) {
+        return tile % size;
+    }
+
+    public byte getTileType(int tile) {
+        return tileTypes[tile];
+    }
+
+    /**
+     * @return True if heroes can walk through the tile. Mines and pubs can be
+     * entered, but the hero stays where it was.
+     */
+    public boolean isPassable(int tile) {
+        return tileTypes[tile] == AIR;
+    }
+
+    public int firstNeighbour(int tile) {
+        return neighbourOffsets[tile];
+    }
+
+    public int neighbour(int k) {
+        return neighbours[k];
+    }
+
+    public int degree(int tile) {
+        return neighbourOffsets[tile + 1] - neighbourOffsets[tile];
+    }
+
+    /**
+     * @param from Tile index of a hero.
+     * @param move A move of the hero.
+     * @return Tile index the hero ends up on when no other hero is in the way:
+     * the neighbour in the direction of the move if heroes can walk there,
+     * otherwise from.
+     */
+    public int step(int from, BotMove move) {
+        int to;
+        switch (move) {
+            case NORTH:
+                to = getX(from) > 0 ? from - size : from;
+                break;
+            case SOUTH:
+                to = getX(from) < size - 1 ? from + size : from;
+                break;
+            case WEST:
+                to = getY(from) > 0 ? from - 1 : from;
+                break;
+            case EAST:
+                to = getY(from) < size - 1 ? from + 1 : from;
+                break;
+            default:
+                to = from;
+        }
+        return isPassable(to) ? to : from;
+    }
+
+    /**
+     * @param from Tile index.
+     * @param to Tile index of a neighbour of from.
+     * @return The move from one tile to the other, STAY if they are not
+     * neighbours.
+     */
+    public BotMove direction(int from, int to) {
+        if (to == from - size) {
+            return BotMove.NORTH;
+        } else if (to == from + size) {
+            return BotMove.SOUTH;
+        } else if (to == from - 1 && getY(from) > 0) {
+            return BotMove.WEST;
+        } else if (to == from + 1 && getY(to) > 0) {
+            return BotMove.EAST;
+        }
+        return BotMove.STAY;
+    }
+}
@@ -0,0 +1,169 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+/**
+ * Times the phases of a turn as JDK Flight Recorder events, so latency
+ * outliers of a game can be found in a recording afterwards:
+ * <pre>
+ * java -XX:StartFlightRecording=filename=turns.jfr -jar vindiniumclient.jar ...
+ * jfr print --events vindinium.* turns.jfr
+ * </pre>
+ * Every event carries the game, turn and board size the thread is playing,
+ * set by the runner with startTurn(), and the decision maker set by the bot.
+ * <p>
+ * Events cost next to nothing when no recording is running. The events are in
+ * src/jfr, built by the jfr profile on JDK 11 and later. In a build without
+ * them, or on a JVM without Flight Recorder, such as Java 7, every phase is a
+ * no-op.
+ */
+public final class TurnEvents {
+
+    /**
+     * The phases of a turn, each its own event type.
+     */
+    public enum Phase {
+
+        /**
+         * The move request, until the response starts. Of the turn the
+         * response starts.
+         */
+        ROUND_TRIP,
+        /**
+         * Reading the game state from the response.
+         */
+        PARSE,
+        /**
+         * Building the AdvancedGameState of the turn.
+         */
+        STATE_UPDATE,
+        /**
+         * Movement costs around enemy heroes.
+         */
+        THREAT_COSTS,
+        /**
+         * Building the shortest path tree.
+         */
+        SEARCH,
+        /**
+         * wantsToAct and takeAction of one decision maker.
+         */
+        DECISION_MAKER,
+        /**
+         * The whole move of the bot.
+         */
+        MOVE
+    }
+
+    /**
+     * A phase being timed.
+     */
+    public interface Span {
+
+        /**
+         * Stop timing. Optional, record() stops it too.
+         */
+        void end();
+
+        /**
+         * Record the phase with the turn of the calling thread.
+         */
+        void record();
+    }
+
+    /**
+     * What the thread is playing.
+     */
+    static final class Turn {
+
+        String gameId;
+        int turn;
+        int boardSize;
+        String decisionMaker;
+        boolean recording = true;
+    }
+
+    /**
+     * Starts the events of the phases.
+     */
+    interface Recorder {
+
+        Span begin(Phase phase);
+    }
+
+    private static final Span NONE = new Span() {
+        @Override
+        public void end() {
+        }
+
+        @Override
+        public void record() {
+        }
+    };
+
+    /**
+     * The Flight Recorder events, or null if they are not built or the JVM
+     * has no Flight Recorder.
+     */
+    private static final Recorder RECORDER = loadRecorder();
+
+    private static final ThreadLocal<Turn> turnByThread = new ThreadLocal<Turn>() {
+        @Override
+        protected Turn initialValue() {
+            return new Turn();
+        }
+    };
+
+    private TurnEvents() {
+    }
+
+    private static Recorder loadRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName(TurnEvents.class.getPackage().getName() + ".PhaseEvents")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Start timing a phase on the calling thread.
+     */
+    public static Span begin(Phase phase) {
+        return RECORDER != null ? RECORDER.begin(phase) : NONE;
+    }
+
+    /**
+     * Set the turn the calling thread plays, until the next call. Clears the
+     * decision maker.
+     */
+    public static void startTurn(String gameId, int turn, int boardSize) {
+        Turn t = turnByThread.get();
+        t.gameId = gameId;
+        t.turn = turn;
+        t.boardSize = boardSize;
+        t.decisionMaker = null;
+    }
+
+    /**
+     * Turn committing the events of the calling thread on or off. The events
+     * still begin and end, so the code runs as in a real game, but nothing
+     * shows up in a recording. WarmUp turns its thread off.
+     *
+     * @param recording False to leave the thread out of recordings.
+     */
+    public static void setRecording(boolean recording) {
+        turnByThread.get().recording = recording;
+    }
+
+    /**
+     * @param name The decision maker running on the calling thread, after the
+     * move the one that made it.
+     */
+    public static void setDecisionMaker(String name) {
+        turnByThread.get().decisionMaker = name;
+    }
+
+    static Turn currentTurn() {
+        return turnByThread.get();
+    }
+}
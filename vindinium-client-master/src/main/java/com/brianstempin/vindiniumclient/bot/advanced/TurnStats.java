@@ -0,0 +1,107 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times of the turns of one or more games: how long the bot thought and how
+ * long the round trip to the server took.
+ * <p>
+ * Not thread safe. Each runner records its own, merge them to report on
+ * several games.
+ */
+public class TurnStats {
+
+    private long[] thinkNanos = new long[64];
+    private long[] turnNanos = new long[64];
+    private int count;
+    private long elapsedNanos;
+
+    /**
+     * Record one turn.
+     *
+     * @param think Nanoseconds the bot took to decide.
+     * @param turn Nanoseconds from receiving the game state to receiving the
+     * next one.
+     */
+    public void record(long think, long turn) {
+        if (count == thinkNanos.length) {
+            thinkNanos = Arrays.copyOf(thinkNanos, 2 * count);
+            turnNanos = Arrays.copyOf(turnNanos, 2 * count);
+        }
+        thinkNanos[count] = think;
+        turnNanos[count] = turn;
+        count++;
+    }
+
+    /**
+     * @param nanos Wall clock time of the game or games.
+     */
+    public void setElapsedNanos(long nanos) {
+        this.elapsedNanos = nanos;
+    }
+
+    /**
+     * Add the turns of another game. Elapsed time is not added, games played
+     * at the same time overlap.
+     */
+    public void merge(TurnStats other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.thinkNanos[i], other.turnNanos[i]);
+        }
+    }
+
+    public int getTurns() {
+        return count;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return Turns per second of wall clock time, 0 if no time was set.
+     */
+    public double getTurnsPerSecond() {
+        return elapsedNanos == 0 ? 0 : count * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @param percentile 0 to 100.
+     * @return Think time at the percentile in nanoseconds, 0 without turns.
+     */
+    public long getThinkPercentile(double percentile) {
+        return percentile(thinkNanos, percentile);
+    }
+
+    /**
+     * @param percentile 0 to 100.
+     * @return Turn time at the percentile in nanoseconds, 0 without turns.
+     */
+    public long getTurnPercentile(double percentile) {
+        return percentile(turnNanos, percentile);
+    }
+
+    /**
+     * Nearest rank percentile.
+     */
+    private long percentile(long[] values, double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return sorted[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d turns, %.1f turns/s, think p50 %d us p99 %d us, turn p50 %d ms p99 %d ms",
+                count, getTurnsPerSecond(),
+                TimeUnit.NANOSECONDS.toMicros(getThinkPercentile(50)),
+                TimeUnit.NANOSECONDS.toMicros(getThinkPercentile(99)),
+                TimeUnit.NANOSECONDS.toMillis(getTurnPercentile(50)),
+                TimeUnit.NANOSECONDS.toMillis(getTurnPercentile(99)));
+    }
+}
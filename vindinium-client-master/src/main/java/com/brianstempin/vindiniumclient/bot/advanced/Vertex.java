@@ -5,19 +5,20 @@ import java.util.List;
 
 /**
  * Represents some traversable tile on the board
+ * <p>
+ * Vertices only describe the board and are shared by every turn of a game.
+ * Search results such as distances and parents are kept by the search, not
+ * here, so several searches can use the same vertices at once.
  */
-public class Vertex implements Comparable<Vertex> {
+public class Vertex {
 
     private final GameState.Position position;
     private final List<Vertex> adjacentVertices;
-    private Vertex parent;
-    private int distance;
-    private int cost;
+    private int index;
 
     public Vertex(GameState.Position position, List<Vertex> adjacentVertices) {
         this.position = position;
         this.adjacentVertices = adjacentVertices;
-        this.cost = 1;
     }
 
     public GameState.Position getPosition() {
@@ -28,42 +29,22 @@ public class Vertex implements Comparable<Vertex> {
         return adjacentVertices;
     }
 
-    public Vertex getParent() {
-        return parent;
-    }
-
-    public void setParent(Vertex parent) {
-        this.parent = parent;
-    }
-
-    public int getDistance() {
-        return distance;
-    }
-
-    public void setDistance(int distance) {
-        this.distance = distance;
-    }
-
     @Override
     public String toString() {
         return this.position.toString();
     }
 
-    public int getCost() {
-        return cost;
-    }
-
-    public void addCost(int cost) {
-        this.cost += cost;
-    }
-    
-    public void setCost(int newCost) {
-        this.cost = newCost;
+    /**
+     * Index of this vertex's tile, x * size + y. Search code uses it to keep per-vertex state in plain arrays.
+     *
+     * @see TileGraph
+     */
+    public int getIndex() {
+        return index;
     }
 
-    @Override
-    public int compareTo(Vertex other) {
-        return this.getDistance() - other.getDistance();
+    void setIndex(int index) {
+        this.index = index;
     }
 
 }
@@ -3,6 +3,7 @@ package com.brianstempin.vindiniumclient.bot.simple;
 import com.brianstempin.vindiniumclient.bot.BotMove;
 import com.brianstempin.vindiniumclient.bot.BotUtils;
 import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.dto.Positions;
 
 import java.util.*;
 import java.util.logging.Logger;
@@ -30,11 +31,11 @@ public class MurderBot implements SimpleBot {
         Vertex me = null;
 
         // Build the graph sans edges
-
+        Positions positions = Positions.forSize(board.getSize());
         for (int row = 0; row < board.getSize(); row++) {
             for (int col = 0; col < board.getSize(); col++) {
                 Vertex v = new Vertex();
-                GameState.Position pos = new GameState.Position(row, col);
+                GameState.Position pos = positions.get(row, col);
                 int tileStart = row * board.getSize() * 2 + (col * 2);
                 v.setTileType(board.getTiles().substring(tileStart, tileStart + 1 + 1));
                 v.setPosition(pos);
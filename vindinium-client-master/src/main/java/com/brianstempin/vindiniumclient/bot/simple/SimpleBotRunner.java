@@ -55,7 +55,7 @@ public class SimpleBotRunner implements Callable<GameState> {
 
             // Game loop
             while (!gameState.getGame().isFinished() && !gameState.getHero().isCrashed()) {
-                logger.info("Taking turn " + gameState.getGame().getTurn());
+                logger.info("Taking turn {}", gameState.getGame().getTurn());
                 BotMove direction = bot.move(gameState);
                 Move move = new Move(apiKey.getKey(), direction.toString());
 
@@ -0,0 +1,92 @@
+package com.brianstempin.vindiniumclient.dto;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One shared Position for every tile of a board size, indexed like the tiles
+ * string, x * size + y.
+ * <p>
+ * Maps keyed by positions that come from the same table find their keys by
+ * reference, and code that has a tile index gets its position without
+ * allocating. Tables never change and are shared by every game of a size.
+ */
+public final class Positions {
+
+    private static final ConcurrentMap<Integer, Positions> tablesBySize = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final GameState.Position[] positions;
+
+    private Positions(int size) {
+        this.size = size;
+        this.positions = new GameState.Position[size * size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                positions[x * size + y] = new GameState.Position(x, y);
+            }
+        }
+    }
+
+    /**
+     * @param size Width and height of the board.
+     * @return The table of the board size.
+     */
+    public static Positions forSize(int size) {
+        Positions table = tablesBySize.get(size);
+        if (table == null) {
+            Positions created = new Positions(size);
+            table = tablesBySize.putIfAbsent(size, created);
+            if (table == null) {
+                table = created;
+            }
+        }
+        return table;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @param tile Tile index, x * size + y.
+     * @return The shared position of the tile.
+     */
+    public GameState.Position get(int tile) {
+        return positions[tile];
+    }
+
+    /**
+     * @return The shared position of the tile at x, y.
+     */
+    public GameState.Position get(int x, int y) {
+        return positions[x * size + y];
+    }
+
+    /**
+     * @param position Position on the board.
+     * @return Tile index of the position, x * size + y.
+     */
+    public int tileIndex(GameState.Position position) {
+        return position.getX() * size + position.getY();
+    }
+
+    /**
+     * @param position Any position, or null.
+     * @return True if the position is on the board.
+     */
+    public boolean contains(GameState.Position position) {
+        return position != null && position.getX() >= 0 && position.getX() < size
+                && position.getY() >= 0 && position.getY() < size;
+    }
+
+    /**
+     * Returns the shared position equal to the given one.
+     *
+     * @param position Any position, or null.
+     * @return The shared position, or the given one if it is not on the board.
+     */
+    public GameState.Position intern(GameState.Position position) {
+        return contains(position) ? positions[tileIndex(position)] : position;
+    }
+}
@@ -0,0 +1,363 @@
+package com.brianstempin.vindiniumclient.server;
+
+import com.brianstempin.vindiniumclient.bot.advanced.TileGraph;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * One game on the local server, with the rules of Vindinium.
+ * <p>
+ * Heroes take turns in id order. A hero that moves into a wall stays, into a
+ * pub pays 2 gold for 50 life, into a mine it does not own fights it for 20
+ * life and takes it or dies, and into another hero stays. The hero then hits
+ * every enemy next to it for 20 life. A hero that dies gives its mines to the
+ * killer, or to no one if a mine killed it, and respawns with full life on
+ * its spawn point, killing any hero standing there. At the end of its turn a
+ * hero gets 1 gold per mine and loses 1 life, but never goes below 1.
+ * <p>
+ * On the server the client plays one hero and the others move at random. In
+ * a tournament every hero is played by a bot through play(). Not thread safe,
+ * the server locks the game.
+ */
+class LocalGame {
+
+    static final int HEROES = 4;
+    static final int MAX_LIFE = 100;
+    static final int ATTACK_DAMAGE = 20;
+    static final int MINE_DAMAGE = 20;
+    static final int BEER_PRICE = 2;
+    static final int BEER_LIFE = 50;
+
+    private static final String[] DIRECTIONS = {"Stay", "North", "South", "East", "West"};
+
+    private final String id;
+    private final MapGenerator.Board board;
+    private final int size;
+    private final int maxTurns;
+    private final Random random;
+    private final LocalHero[] heroes = new LocalHero[HEROES];
+    /**
+     * Id of the hero owning each tile, 0 if no one does.
+     */
+    private final int[] mineOwners;
+    /**
+     * Hero of the client, null in a tournament.
+     */
+    private final LocalHero client;
+    private int turn;
+
+    private static final class LocalHero {
+        final int id;
+        final String name;
+        final String userId;
+        final int spawn;
+        int tile;
+        int life = MAX_LIFE;
+        int gold;
+        boolean crashed;
+
+        LocalHero(int id, String name, String userId, int spawn) {
+            this.id = id;
+            this.name = name;
+            this.userId = userId;
+            this.spawn = spawn;
+            this.tile = spawn;
+        }
+    }
+
+    /**
+     * @param id Game id.
+     * @param board Board to play on.
+     * @param maxTurns Moves of all heroes together, 4 times the turns of one.
+     * @param random Decides the hero of the client and the moves of the
+     * others.
+     * @param clientName Name of the hero of the client.
+     */
+    LocalGame(String id, MapGenerator.Board board, int maxTurns, Random random, String clientName) {
+        this(id, board, maxTurns, random, new String[HEROES], 1 + random.nextInt(HEROES), clientName);
+    }
+
+    /**
+     * Game where every hero is played through play().
+     *
+     * @param names Names of the heroes, hero 1 first.
+     */
+    LocalGame(String id, MapGenerator.Board board, int maxTurns, Random random, String[] names) {
+        this(id, board, maxTurns, random, names, 0, null);
+    }
+
+    private LocalGame(String id, MapGenerator.Board board, int maxTurns, Random random, String[] names,
+            int clientId, String clientName) {
+        this.id = id;
+        this.board = board;
+        this.size = board.getSize();
+        this.maxTurns = maxTurns;
+        this.random = random;
+        this.mineOwners = new int[size * size];
+        for (int i = 1; i <= HEROES; i++) {
+            heroes[i - 1] = i == clientId ? new LocalHero(i, clientName, clientName, board.getSpawn(i))
+                    : new LocalHero(i, names[i - 1] == null ? "random" + i : names[i - 1], null, board.getSpawn(i));
+        }
+        this.client = clientId == 0 ? null : heroes[clientId - 1];
+    }
+
+    String getId() {
+        return id;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    boolean isFinished() {
+        return turn >= maxTurns;
+    }
+
+    /**
+     * Let the other heroes play until it is the turn of the client or the game
+     * is over.
+     */
+    void playOthers() {
+        while (!isFinished() && current() != client) {
+            playRandom();
+        }
+    }
+
+    /**
+     * Play the turn of the client, then those of the others.
+     *
+     * @param direction Name of the move, as in the play request.
+     */
+    void playClient(String direction) {
+        if (isFinished() || current() != client) {
+            throw new IllegalStateException("Not the turn of the client");
+        }
+        move(client, client.crashed ? "Stay" : direction);
+        playOthers();
+    }
+
+    /**
+     * The client took too long, it stays for the rest of the game and the
+     * game is played to the end.
+     */
+    void crashClient() {
+        client.crashed = true;
+        while (!isFinished()) {
+            playRandom();
+        }
+    }
+
+    private LocalHero current() {
+        return heroes[turn % HEROES];
+    }
+
+    /**
+     * @return Id of the hero whose turn it is.
+     */
+    int getCurrentHeroId() {
+        return current().id;
+    }
+
+    /**
+     * Play the turn of the current hero. A crashed hero stays whatever the
+     * direction.
+     *
+     * @param direction Name of the move, as in the play request.
+     */
+    void play(String direction) {
+        if (isFinished()) {
+            throw new IllegalStateException("The game is finished");
+        }
+        LocalHero hero = current();
+        move(hero, hero.crashed ? "Stay" : direction);
+    }
+
+    /**
+     * Play a random move for the current hero, drawn from the random of the
+     * game.
+     */
+    void playRandom() {
+        play(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+    }
+
+    /**
+     * The hero stays for the rest of the game.
+     */
+    void crash(int heroId) {
+        heroes[heroId - 1].crashed = true;
+    }
+
+    int getGold(int heroId) {
+        return heroes[heroId - 1].gold;
+    }
+
+    private void move(LocalHero hero, String direction) {
+        int to = neighbour(hero.tile, direction);
+        boolean alive = true;
+        if (to >= 0) {
+            switch (board.getTileType(to)) {
+                case TileGraph.AIR:
+                    if (heroAt(to) == null) {
+                        hero.tile = to;
+                    }
+                    break;
+                case TileGraph.PUB:
+                    if (hero.gold >= BEER_PRICE) {
+                        hero.gold -= BEER_PRICE;
+                        hero.life = Math.min(MAX_LIFE, hero.life + BEER_LIFE);
+                    }
+                    break;
+                case TileGraph.MINE:
+                    if (mineOwners[to] != hero.id) {
+                        hero.life -= MINE_DAMAGE;
+                        if (hero.life > 0) {
+                            mineOwners[to] = hero.id;
+                        } else {
+                            die(hero, null);
+                            alive = false;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (alive) {
+            for (LocalHero enemy : heroes) {
+                if (enemy != hero && isNeighbour(hero.tile, enemy.tile)) {
+                    enemy.life -= ATTACK_DAMAGE;
+                    if (enemy.life <= 0) {
+                        die(enemy, hero);
+                    }
+                }
+            }
+        }
+
+        hero.gold += mineCount(hero);
+        hero.life = Math.max(1, hero.life - 1);
+        turn++;
+    }
+
+    /**
+     * @param killer Hero that gets the mines, null if they become neutral.
+     */
+    private void die(LocalHero hero, LocalHero killer) {
+        for (int tile = 0; tile < mineOwners.length; tile++) {
+            if (mineOwners[tile] == hero.id) {
+                mineOwners[tile] = killer == null ? 0 : killer.id;
+            }
+        }
+        hero.life = MAX_LIFE;
+        LocalHero telefragged = heroAt(hero.spawn);
+        hero.tile = hero.spawn;
+        if (telefragged != null && telefragged != hero) {
+            die(telefragged, hero);
+        }
+    }
+
+    /**
+     * @return Tile index of the neighbour in the direction, -1 if it is off
+     * the board or the move is Stay.
+     */
+    private int neighbour(int tile, String direction) {
+        int x = tile / size;
+        int y = tile % size;
+        if ("North".equalsIgnoreCase(direction)) {
+            x--;
+        } else if ("South".equalsIgnoreCase(direction)) {
+            x++;
+        } else if ("West".equalsIgnoreCase(direction)) {
+            y--;
+        } else if ("East".equalsIgnoreCase(direction)) {
+            y++;
+        } else {
+            return -1;
+        }
+        return x < 0 || y < 0 || x >= size || y >= size ? -1 : x * size + y;
+    }
+
+    private boolean isNeighbour(int a, int b) {
+        return Math.abs(a / size - b / size) + Math.abs(a % size - b % size) == 1;
+    }
+
+    private LocalHero heroAt(int tile) {
+        for (LocalHero h : heroes) {
+            if (h.tile == tile) {
+                return h;
+            }
+        }
+        return null;
+    }
+
+    private int mineCount(LocalHero hero) {
+        int count = 0;
+        for (int owner : mineOwners) {
+            if (owner == hero.id) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The board in the format of the server: two characters a tile,
+     * row by row.
+     */
+    String getTiles() {
+        StringBuilder tiles = new StringBuilder(2 * size * size);
+        for (int tile = 0; tile < size * size; tile++) {
+            LocalHero hero = heroAt(tile);
+            if (hero != null) {
+                tiles.append('@').append(hero.id);
+                continue;
+            }
+            switch (board.getTileType(tile)) {
+                case TileGraph.WALL:
+                    tiles.append("##");
+                    break;
+                case TileGraph.PUB:
+                    tiles.append("[]");
+                    break;
+                case TileGraph.MINE:
+                    tiles.append('$').append(mineOwners[tile] == 0 ? "-" : String.valueOf(mineOwners[tile]));
+                    break;
+                default:
+                    tiles.append("  ");
+            }
+        }
+        return tiles.toString();
+    }
+
+    /**
+     * @return The state as the client sees it.
+     */
+    GameState toGameState(String token, String viewUrl, String playUrl) {
+        return toGameState(client.id, token, viewUrl, playUrl);
+    }
+
+    /**
+     * @return The state as the hero sees it.
+     */
+    GameState toGameState(int heroId, String token, String viewUrl, String playUrl) {
+        List<GameState.Hero> dtos = new ArrayList<>(HEROES);
+        GameState.Hero me = null;
+        for (LocalHero h : heroes) {
+            GameState.Hero dto = new GameState.Hero(h.id, h.name, h.userId, 1200, position(h.tile), h.life, h.gold,
+                    mineCount(h), position(h.spawn), h.crashed);
+            dtos.add(dto);
+            if (h.id == heroId) {
+                me = dto;
+            }
+        }
+        GameState.Game game = new GameState.Game(id, turn, maxTurns, dtos, new GameState.Board(getTiles(), size),
+                isFinished());
+        return new GameState(game, me, token, viewUrl, playUrl);
+    }
+
+    private GameState.Position position(int tile) {
+        return new GameState.Position(tile / size, tile % size);
+    }
+}
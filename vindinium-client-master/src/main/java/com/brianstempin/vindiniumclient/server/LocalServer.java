@@ -0,0 +1,401 @@
+package com.brianstempin.vindiniumclient.server;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Stand-in for the Vindinium server, to play training games without a
+ * network.
+ * <p>
+ * It speaks the training protocol: a POST to /api/training with the key, and
+ * optionally the number of turns, starts a game against three random heroes
+ * and answers with the game state, and a POST to the play URL of the state
+ * with the key and the direction plays a turn. The states are JSON in the
+ * shape of GameState. A GET of the view URL shows the board as text.
+ * <p>
+ * Game n, counting from 0, is made from a hash of the seed plus n, so the same seed
+ * gives the same games in the same order. Every answer can be delayed by a
+ * fixed latency, a random jitter and now and then a stall. The delay counts
+ * towards the time the client has to play, like a slow network does. A
+ * client that takes longer than the timeout crashes and its game is played to
+ * the end at once. A matchmaking wait delays the start of every game.
+ * <p>
+ * Run it with
+ * <pre>
+ * java -cp vindiniumclient.jar com.brianstempin.vindiniumclient.server.LocalServer [port] [seed] [latency ms] [jitter ms] [matchmaking wait ms]
+ * </pre>
+ * and point the client at http://localhost:port/api/training.
+ */
+public class LocalServer {
+
+    private static final Logger logger = LogManager.getLogger(LocalServer.class);
+    private static final Gson gson = new Gson();
+
+    public static final int DEFAULT_PORT = 9000;
+    public static final int DEFAULT_TURNS = 300;
+    public static final int DEFAULT_BOARD_SIZE = 18;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    private final int port;
+    private final long seed;
+    private final AtomicInteger gameCount = new AtomicInteger();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private int boardSize = DEFAULT_BOARD_SIZE;
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private long latencyMillis;
+    private long jitterMillis;
+    private double stallChance;
+    private long stallMillis;
+    private long matchmakingMillis;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * A game and what the server knows about its client.
+     */
+    private static final class Session {
+        final LocalGame game;
+        final String token;
+        final String viewUrl;
+        final String playUrl;
+        /**
+         * Decides the delays of the answers of this game.
+         */
+        final Random delays;
+        /**
+         * When the client was given its turn, in System.nanoTime.
+         */
+        long turnStart;
+
+        Session(LocalGame game, String token, String viewUrl, String playUrl, Random delays) {
+            this.game = game;
+            this.token = token;
+            this.viewUrl = viewUrl;
+            this.playUrl = playUrl;
+            this.delays = delays;
+        }
+    }
+
+    /**
+     * @param port Port to listen on, 0 for any free port.
+     * @param seed Seed of the games.
+     */
+    public LocalServer(int port, long seed) {
+        this.port = port;
+        this.seed = seed;
+    }
+
+    /**
+     * @param boardSize Width and height of new boards, even and at least 6.
+     */
+    public void setBoardSize(int boardSize) {
+        this.boardSize = boardSize;
+    }
+
+    /**
+     * @param timeoutMillis Time the client has to play, delays included.
+     */
+    public void setTimeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Delay every answer by latency plus a uniformly random part of jitter.
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Delay an answer by an extra stall now and then.
+     *
+     * @param chance Probability of a stall, 0 to 1.
+     * @param stallMillis Length of a stall.
+     */
+    public void setStalls(double chance, long stallMillis) {
+        this.stallChance = chance;
+        this.stallMillis = stallMillis;
+    }
+
+    /**
+     * Wait before starting a game, like the server waiting for opponents.
+     * The wait does not count towards the time the client has to play.
+     */
+    public void setMatchmakingWait(long matchmakingMillis) {
+        this.matchmakingMillis = matchmakingMillis;
+    }
+
+    /**
+     * Start listening on the loopback address.
+     */
+    public synchronized void start() throws IOException {
+        // Answers are small, without this every one waits for the delayed ACK of the last
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "local-server-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    route(exchange);
+                } catch (RuntimeException e) {
+                    logger.error("Local server failed on {}", exchange.getRequestURI(), e);
+                    reply(exchange, 500, "text/plain", e.toString());
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+        logger.info("Local server listening on {}", getTrainingUrl());
+    }
+
+    /**
+     * Stop listening and drop the games.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            sessions.clear();
+        }
+    }
+
+    /**
+     * @return Port the server listens on.
+     */
+    public int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    public String getTrainingUrl() {
+        return "http://localhost:" + getPort() + "/api/training";
+    }
+
+    /**
+     * @return Number of games started.
+     */
+    public int getGameCount() {
+        return gameCount.get();
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String[] parts = path.split("/");
+        boolean post = "POST".equalsIgnoreCase(exchange.getRequestMethod());
+        if (post && "/api/training".equals(path)) {
+            training(exchange, readForm(exchange));
+        } else if (post && parts.length == 5 && "api".equals(parts[1]) && "play".equals(parts[4])) {
+            play(exchange, parts[2], parts[3], readForm(exchange));
+        } else if (!post && parts.length == 2) {
+            view(exchange, parts[1]);
+        } else {
+            reply(exchange, 404, "text/plain", "Vindinium - Not found");
+        }
+    }
+
+    private void training(HttpExchange exchange, Map<String, String> form) throws IOException {
+        String key = form.get("key");
+        if (key == null || key.isEmpty()) {
+            reply(exchange, 400, "text/plain", "Vindinium - Key required");
+            return;
+        }
+        int turns = DEFAULT_TURNS;
+        if (form.containsKey("turns")) {
+            try {
+                turns = Integer.parseInt(form.get("turns"));
+            } catch (NumberFormatException e) {
+                reply(exchange, 400, "text/plain", "Vindinium - Bad number of turns");
+                return;
+            }
+        }
+        sleep(matchmakingMillis);
+
+        int number = gameCount.getAndIncrement();
+        Random random = new Random(mix(seed + number));
+        String id = "local" + Integer.toString(number, 36);
+        String token = Integer.toString(1296 + random.nextInt(45360), 36);
+        String base = "http://localhost:" + getPort() + "/";
+        LocalGame game = new LocalGame(id, MapGenerator.generate(boardSize, random), LocalGame.HEROES * turns,
+                random, key);
+        Session session = new Session(game, token, base + id, base + "api/" + id + "/" + token + "/play",
+                new Random(random.nextLong()));
+        sessions.put(id, session);
+
+        String json;
+        synchronized (session) {
+            game.playOthers();
+            json = answer(session);
+        }
+        delay(session);
+        reply(exchange, 200, "application/json", json);
+    }
+
+    private void play(HttpExchange exchange, String id, String token, Map<String, String> form) throws IOException {
+        Session session = sessions.get(id);
+        if (session == null || !session.token.equals(token)) {
+            reply(exchange, 404, "text/plain", "Vindinium - Game not found");
+            return;
+        }
+        String json;
+        synchronized (session) {
+            LocalGame game = session.game;
+            if (game.isFinished()) {
+                reply(exchange, 400, "text/plain", "Vindinium - The game is finished");
+                return;
+            }
+            long waited = System.nanoTime() - session.turnStart;
+            if (waited > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+                logger.info("Client of {} timed out after {}ms", id, TimeUnit.NANOSECONDS.toMillis(waited));
+                game.crashClient();
+            } else {
+                game.playClient(form.get("dir"));
+            }
+            json = answer(session);
+        }
+        delay(session);
+        reply(exchange, 200, "application/json", json);
+    }
+
+    private void view(HttpExchange exchange, String id) throws IOException {
+        Session session = sessions.get(id);
+        if (session == null) {
+            reply(exchange, 404, "text/plain", "Vindinium - Game not found");
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        synchronized (session) {
+            int size = session.game.getSize();
+            String tiles = session.game.getTiles();
+            for (int x = 0; x < size; x++) {
+                text.append(tiles, 2 * x * size, 2 * (x + 1) * size).append('\n');
+            }
+        }
+        reply(exchange, 200, "text/plain", text.toString());
+    }
+
+    /**
+     * State for the client, and the start of its time to play. A finished
+     * game is forgotten.
+     */
+    private String answer(Session session) {
+        String json = gson.toJson(session.game.toGameState(session.token, session.viewUrl, session.playUrl));
+        session.turnStart = System.nanoTime();
+        if (session.game.isFinished()) {
+            sessions.remove(session.game.getId());
+        }
+        return json;
+    }
+
+    /**
+     * Random gives about the same first numbers for seeds that are close, so
+     * spread them first. This is the finaliser of MurmurHash3.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private void delay(Session session) {
+        long millis = latencyMillis;
+        synchronized (session) {
+            if (jitterMillis > 0) {
+                millis += (long) (session.delays.nextDouble() * jitterMillis);
+            }
+            if (stallChance > 0 && session.delays.nextDouble() < stallChance) {
+                millis += stallMillis;
+            }
+        }
+        sleep(millis);
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Map<String, String> readForm(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream in = exchange.getRequestBody();
+        byte[] buffer = new byte[512];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            body.write(buffer, 0, read);
+        }
+        Map<String, String> form = new HashMap<>();
+        for (String pair : new String(body.toByteArray(), StandardCharsets.UTF_8).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return form;
+    }
+
+    private static void reply(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Arguments: [port] [seed] [latency ms] [jitter ms] [matchmaking wait ms]
+     */
+    public static void main(String args[]) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        LocalServer localServer = new LocalServer(port, seed);
+        localServer.setLatency(args.length > 2 ? Long.parseLong(args[2]) : 0,
+                args.length > 3 ? Long.parseLong(args[3]) : 0);
+        localServer.setMatchmakingWait(args.length > 4 ? Long.parseLong(args[4]) : 0);
+        localServer.start();
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,171 @@
+package com.brianstempin.vindiniumclient.server;
+
+import com.brianstempin.vindiniumclient.bot.advanced.TileGraph;
+import java.util.Random;
+
+/**
+ * Makes boards like the ones of the Vindinium server: one quarter is random
+ * and mirrored to the other three, so every hero has the same chances.
+ * <p>
+ * Tiles use the TileGraph types and tile index x * size + y. Every spawn
+ * point, pub and mine can be reached from every spawn point. Tiles that
+ * cannot be reached become walls.
+ */
+public final class MapGenerator {
+
+    private static final double WALL_CHANCE = 0.25;
+    private static final double MINE_CHANCE = 0.06;
+
+    private MapGenerator() {
+    }
+
+    /**
+     * A generated board.
+     */
+    public static final class Board {
+
+        private final int size;
+        private final byte[] tileTypes;
+        /**
+         * Tile index of the spawn point of each hero, hero 1 first.
+         */
+        private final int[] spawns;
+
+        Board(int size, byte[] tileTypes, int[] spawns) {
+            this.size = size;
+            this.tileTypes = tileTypes;
+            this.spawns = spawns;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public byte getTileType(int tile) {
+            return tileTypes[tile];
+        }
+
+        /**
+         * @param heroId 1 to 4.
+         * @return Tile index of the spawn point of the hero.
+         */
+        public int getSpawn(int heroId) {
+            return spawns[heroId - 1];
+        }
+    }
+
+    /**
+     * @param size Width and height, an even number of at least 6.
+     * @param random Source of the board.
+     * @return A board where everything can be reached.
+     */
+    public static Board generate(int size, Random random) {
+        if (size < 6 || size % 2 != 0) {
+            throw new IllegalArgumentException("Board size must be even and at least 6, not " + size);
+        }
+        while (true) {
+            Board board = tryGenerate(size, random);
+            if (board != null) {
+                return board;
+            }
+        }
+    }
+
+    private static Board tryGenerate(int size, Random random) {
+        int half = size / 2;
+        byte[] types = new byte[size * size];
+        for (int x = 0; x < half; x++) {
+            for (int y = 0; y < half; y++) {
+                double r = random.nextDouble();
+                byte type = r < WALL_CHANCE ? TileGraph.WALL : r < WALL_CHANCE + MINE_CHANCE ? TileGraph.MINE
+                        : TileGraph.AIR;
+                mirror(types, size, x, y, type);
+            }
+        }
+        int pub = randomAir(types, size, half, random);
+        if (pub < 0) {
+            return null;
+        }
+        mirror(types, size, pub / size, pub % size, TileGraph.PUB);
+        int spawn = randomAir(types, size, half, random);
+        if (spawn < 0) {
+            return null;
+        }
+        int sx = spawn / size;
+        int sy = spawn % size;
+        int[] spawns = {
+            sx * size + sy,
+            sx * size + (size - 1 - sy),
+            (size - 1 - sx) * size + (size - 1 - sy),
+            (size - 1 - sx) * size + sy};
+
+        boolean[] reached = reach(types, size, spawns[0]);
+        boolean mine = false;
+        for (int tile = 0; tile < types.length; tile++) {
+            if (!reached[tile]) {
+                types[tile] = TileGraph.WALL;
+            } else if (types[tile] == TileGraph.MINE) {
+                mine = true;
+            }
+        }
+        for (int s : spawns) {
+            if (!reached[s]) {
+                return null;
+            }
+        }
+        if (!mine || !reached[pub]) {
+            return null;
+        }
+        return new Board(size, types, spawns);
+    }
+
+    private static void mirror(byte[] types, int size, int x, int y, byte type) {
+        types[x * size + y] = type;
+        types[x * size + (size - 1 - y)] = type;
+        types[(size - 1 - x) * size + y] = type;
+        types[(size - 1 - x) * size + (size - 1 - y)] = type;
+    }
+
+    /**
+     * @return A random AIR tile of the top left quarter, or -1 if there is
+     * none.
+     */
+    private static int randomAir(byte[] types, int size, int half, Random random) {
+        for (int attempt = 0; attempt < 4 * half * half; attempt++) {
+            int tile = random.nextInt(half) * size + random.nextInt(half);
+            if (types[tile] == TileGraph.AIR) {
+                return tile;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Breadth first search that walks through AIR only, like heroes do.
+     */
+    private static boolean[] reach(byte[] types, int size, int start) {
+        boolean[] reached = new boolean[types.length];
+        int[] queue = new int[types.length];
+        int head = 0;
+        int tail = 0;
+        reached[start] = true;
+        queue[tail++] = start;
+        while (head < tail) {
+            int tile = queue[head++];
+            if (types[tile] != TileGraph.AIR) {
+                continue;
+            }
+            int x = tile / size;
+            int y = tile % size;
+            int[] next = {x > 0 ? tile - size : -1, x < size - 1 ? tile + size : -1, y > 0 ? tile - 1 : -1,
+                y < size - 1 ? tile + 1 : -1};
+            for (int n : next) {
+                if (n >= 0 && !reached[n] && types[n] != TileGraph.WALL) {
+                    reached[n] = true;
+                    queue[tail++] = n;
+                }
+            }
+        }
+        return reached;
+    }
+}
@@ -0,0 +1,420 @@
+package com.brianstempin.vindiniumclient.server;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedBot;
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.bot.simple.SimpleBot;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Plays seeded games between four bots in this process, without HTTP.
+ * <p>
+ * The games have the rules and boards of LocalServer: game n is played on the
+ * board of game n of a server with the same seed and board size. The bots take turns sitting
+ * in each seat, entrant i plays hero (i + n) % 4 + 1 in game n, so no one
+ * keeps a better spawn point. Every hero gets a new bot each game. Bots see
+ * the same GameState they would get from the server. A bot that throws an
+ * exception, overflows its stack or fails an assertion is crashed and stays
+ * for the rest of its game, like one that times out.
+ * <p>
+ * Games are split between the threads of a fork-join pool. Each game is
+ * played on one thread from start to end, so the bots need not be thread
+ * safe, but state they share between instances has to be.
+ */
+public class Tournament {
+
+    private static final Logger logger = LogManager.getLogger(Tournament.class);
+
+    public static final int SEATS = LocalGame.HEROES;
+
+    /**
+     * One bot playing one game.
+     */
+    public interface Player {
+
+        /**
+         * @param gameState State of the game, with this player as the hero.
+         * @return The move of the hero.
+         */
+        BotMove move(GameState gameState);
+
+        /**
+         * Called after the game.
+         */
+        void finish();
+    }
+
+    /**
+     * A bot taking part in the tournament.
+     */
+    public interface Entrant {
+
+        String getName();
+
+        /**
+         * @return A new player for one game, or null to have the game move the
+         * hero at random.
+         */
+        Player newPlayer();
+    }
+
+    /**
+     * Entrant that moves at random like the heroes of the server, with moves
+     * drawn from the seed of the game. RandomBot uses Math.random, so games
+     * with it cannot be repeated.
+     */
+    public static final Entrant RANDOM_HERO = new Entrant() {
+        @Override
+        public String getName() {
+            return "random";
+        }
+
+        /**
+         * @return Null, the game moves the hero.
+         */
+        @Override
+        public Player newPlayer() {
+            return null;
+        }
+    };
+
+    /**
+     * Entrant playing with a new AdvancedBot each game.
+     */
+    public abstract static class AdvancedEntrant implements Entrant {
+
+        private final String name;
+
+        public AdvancedEntrant(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Bot for one game.
+         */
+        protected abstract AdvancedBot newBot();
+
+        @Override
+        public Player newPlayer() {
+            final AdvancedBot bot = newBot();
+            return new Player() {
+                private AdvancedGameState state;
+
+                @Override
+                public BotMove move(GameState gameState) {
+                    if (state == null) {
+                        bot.setup();
+                        state = new AdvancedGameState(gameState);
+                    } else {
+                        state = new AdvancedGameState(state, gameState);
+                    }
+                    return bot.move(state);
+                }
+
+                @Override
+                public void finish() {
+                    bot.shutdown();
+                }
+            };
+        }
+    }
+
+    /**
+     * Entrant playing with a new SimpleBot each game.
+     */
+    public abstract static class SimpleEntrant implements Entrant {
+
+        private final String name;
+
+        public SimpleEntrant(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Bot for one game.
+         */
+        protected abstract SimpleBot newBot();
+
+        @Override
+        public Player newPlayer() {
+            final SimpleBot bot = newBot();
+            bot.setup();
+            return new Player() {
+                @Override
+                public BotMove move(GameState gameState) {
+                    return bot.move(gameState);
+                }
+
+                @Override
+                public void finish() {
+                    bot.shutdown();
+                }
+            };
+        }
+    }
+
+    /**
+     * @param botClass Needs a public no argument constructor.
+     * @return Entrant playing with new instances of the class.
+     */
+    public static Entrant advanced(final Class<? extends AdvancedBot> botClass) {
+        return new AdvancedEntrant(botClass.getSimpleName()) {
+            @Override
+            protected AdvancedBot newBot() {
+                return newInstance(botClass);
+            }
+        };
+    }
+
+    /**
+     * @param botClass Needs a public no argument constructor.
+     * @return Entrant playing with new instances of the class.
+     */
+    public static Entrant simple(final Class<? extends SimpleBot> botClass) {
+        return new SimpleEntrant(botClass.getSimpleName()) {
+            @Override
+            protected SimpleBot newBot() {
+                return newInstance(botClass);
+            }
+        };
+    }
+
+    private static <T> T newInstance(Class<T> botClass) {
+        try {
+            return botClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot create " + botClass.getName(), e);
+        }
+    }
+
+    private final Entrant[] entrants;
+    private final long seed;
+    private int boardSize = LocalServer.DEFAULT_BOARD_SIZE;
+    private int turns = LocalServer.DEFAULT_TURNS;
+
+    /**
+     * @param entrants Four bots, the same one may play several heroes.
+     * @param seed Seed of the games.
+     */
+    public Tournament(List<Entrant> entrants, long seed) {
+        if (entrants.size() != SEATS) {
+            throw new IllegalArgumentException("A game needs " + SEATS + " entrants, not " + entrants.size());
+        }
+        this.entrants = entrants.toArray(new Entrant[SEATS]);
+        this.seed = seed;
+    }
+
+    /**
+     * @param boardSize Width and height of the boards, even and at least 6.
+     */
+    public void setBoardSize(int boardSize) {
+        this.boardSize = boardSize;
+    }
+
+    /**
+     * @param turns Turns of each hero per game.
+     */
+    public void setTurns(int turns) {
+        this.turns = turns;
+    }
+
+    /**
+     * Play games firstGame to firstGame + games - 1.
+     *
+     * @param pool Pool to play on.
+     * @return Results of the games, with the time they took.
+     */
+    public Result play(ForkJoinPool pool, int firstGame, int games) {
+        long start = System.nanoTime();
+        Result result = pool.invoke(new GamesTask(firstGame, firstGame + games));
+        result.elapsedNanos = System.nanoTime() - start;
+        result.threads = pool.getParallelism();
+        return result;
+    }
+
+    /**
+     * Splits a range of games in halves until one is left.
+     */
+    private final class GamesTask extends RecursiveTask<Result> {
+
+        private final int from;
+        private final int to;
+
+        GamesTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from == 1) {
+                return playGame(from);
+            }
+            int middle = (from + to) >>> 1;
+            GamesTask left = new GamesTask(from, middle);
+            left.fork();
+            Result right = new GamesTask(middle, to).compute();
+            Result result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+
+    private Result playGame(int n) {
+        // Same draws as LocalServer.training, so that the board is the one of
+        // its game n
+        Random random = new Random(LocalServer.mix(seed + n));
+        random.nextInt(45360); // Token
+        MapGenerator.Board board = MapGenerator.generate(boardSize, random);
+
+        // Entrant of each hero, hero 1 first
+        int[] seats = new int[SEATS];
+        String[] names = new String[SEATS];
+        Player[] players = new Player[SEATS];
+        for (int i = 0; i < SEATS; i++) {
+            int hero = (i + n) % SEATS;
+            seats[hero] = i;
+            names[hero] = entrants[i].getName();
+            players[hero] = entrants[i].newPlayer();
+        }
+        LocalGame game = new LocalGame("tournament" + n, board, SEATS * turns, random, names);
+        random.nextLong(); // Delays
+
+        Result result = new Result(entrants);
+        boolean[] crashed = new boolean[SEATS];
+        while (!game.isFinished()) {
+            int hero = game.getCurrentHeroId();
+            if (players[hero - 1] == null) {
+                game.playRandom();
+                continue;
+            }
+            BotMove move = BotMove.STAY;
+            if (!crashed[hero - 1]) {
+                try {
+                    move = players[hero - 1].move(game.toGameState(hero, null, null, null));
+                } catch (RuntimeException | StackOverflowError | AssertionError e) {
+                    logger.warn("Game {}: {} crashed", n, names[hero - 1], e);
+                    crashed[hero - 1] = true;
+                    game.crash(hero);
+                    result.crashes[seats[hero - 1]]++;
+                }
+            }
+            game.play(move.toString());
+        }
+        for (Player player : players) {
+            if (player != null) {
+                player.finish();
+            }
+        }
+
+        int best = 0;
+        for (int hero = 1; hero <= SEATS; hero++) {
+            best = Math.max(best, game.getGold(hero));
+        }
+        for (int hero = 1; hero <= SEATS; hero++) {
+            result.gold[seats[hero - 1]] += game.getGold(hero);
+            if (game.getGold(hero) == best) {
+                result.wins[seats[hero - 1]]++;
+            }
+        }
+        result.games = 1;
+        return result;
+    }
+
+    /**
+     * Wins, gold and crashes of each entrant over a number of games. A tie
+     * for the most gold is a win for everyone in it.
+     */
+    public static class Result {
+
+        private final String[] names;
+        private final int[] wins = new int[SEATS];
+        private final long[] gold = new long[SEATS];
+        private final int[] crashes = new int[SEATS];
+        private int games;
+        private long elapsedNanos;
+        private int threads;
+
+        Result(Entrant[] entrants) {
+            names = new String[SEATS];
+            for (int i = 0; i < SEATS; i++) {
+                names[i] = entrants[i].getName();
+            }
+        }
+
+        void merge(Result other) {
+            for (int i = 0; i < SEATS; i++) {
+                wins[i] += other.wins[i];
+                gold[i] += other.gold[i];
+                crashes[i] += other.crashes[i];
+            }
+            games += other.games;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        /**
+         * @param entrant Index of the entrant in the list of the tournament.
+         * @return Part of the games won, 0 to 1.
+         */
+        public double getWinRate(int entrant) {
+            return games == 0 ? 0 : (double) wins[entrant] / games;
+        }
+
+        /**
+         * @param entrant Index of the entrant in the list of the tournament.
+         */
+        public double getAverageGold(int entrant) {
+            return games == 0 ? 0 : (double) gold[entrant] / games;
+        }
+
+        /**
+         * @param entrant Index of the entrant in the list of the tournament.
+         * @return Games in which the entrant crashed.
+         */
+        public int getCrashes(int entrant) {
+            return crashes[entrant];
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return Games per second of wall clock time divided by the threads of
+         * the pool.
+         */
+        public double getGamesPerSecondPerCore() {
+            return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos / threads;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format("%d games, %.2f games/s/core on %d threads",
+                    games, getGamesPerSecondPerCore(), threads));
+            for (int i = 0; i < SEATS; i++) {
+                text.append(String.format("%n  %d %-20s win rate %5.1f%%, average gold %6.1f, crashes %d",
+                        i, names[i], 100 * getWinRate(i), getAverageGold(i), crashes[i]));
+            }
+            return text.toString();
+        }
+    }
+}
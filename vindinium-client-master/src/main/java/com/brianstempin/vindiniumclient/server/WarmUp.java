@@ -0,0 +1,227 @@
+package com.brianstempin.vindiniumclient.server;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedBot;
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.bot.advanced.GameStateReader;
+import com.brianstempin.vindiniumclient.bot.advanced.TerrainCache;
+import com.brianstempin.vindiniumclient.bot.advanced.TurnEvents;
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+
+/**
+ * Warms up the JIT compiler while the client waits to be assigned a game, so
+ * the first turns of the game do not run interpreted.
+ * <p>
+ * A background thread plays games of the local server with new instances of
+ * the bot class, through the code the runner uses: each state goes through
+ * JSON, GameStateReader, AdvancedGameState and the move of the bot. Nothing
+ * is sent anywhere. Its turns are not recorded as Flight Recorder events, see
+ * TurnEvents.setRecording. It stops when stop() is called, when the JIT
+ * compiler has compiled nothing new for QUIET_MOVES moves, or after MAX_MOVES
+ * moves. The boards come from a fixed seed. Their graphs and terrain
+ * distances are kept in a TerrainCache of the warm-up's own, in memory only,
+ * so they neither push the boards of real games out of the default cache nor
+ * write files.
+ * <p>
+ * The compiled code is shared by the whole process, so only the first
+ * warm-up of a process runs, and -Dvindinium.warmUp=false turns it off. The
+ * warm-up thread has the thread context key THREAD_CONTEXT_KEY, which
+ * log4j2.xml uses to keep the logs of its games out of the log.
+ */
+public final class WarmUp {
+
+    /**
+     * System property, false turns the warm-up off.
+     */
+    public static final String PROPERTY = "vindinium.warmUp";
+    public static final String THREAD_CONTEXT_KEY = "warmUp";
+
+    static final long SEED = 0x5761726d;
+    /**
+     * Sizes of the boards, one per game in turn.
+     */
+    static final int[] BOARD_SIZES = {18, 28, 12, 24, 14, 20};
+    static final int MIN_MOVES = 200;
+    static final int QUIET_MOVES = 200;
+    static final int MAX_MOVES = 5000;
+    /**
+     * Longest stop() waits for the current move, far longer than a move
+     * takes.
+     */
+    static final long STOP_WAIT_MS = 100;
+
+    private static final Logger logger = LogManager.getLogger(WarmUp.class);
+    private static final Gson gson = new Gson();
+    private static final AtomicBoolean started = new AtomicBoolean();
+
+    private final Class<? extends AdvancedBot> botClass;
+    private final Thread thread;
+    private final long startNanos = System.nanoTime();
+    private volatile boolean stopRequested;
+
+    // Written by the warm-up thread, read after it ended
+    private int moves;
+    private int games;
+    private long coldMoveNanos = -1;
+    private long elapsedNanos;
+    private String stoppedBy = "the game";
+
+    private WarmUp(Class<? extends AdvancedBot> botClass) {
+        this.botClass = botClass;
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ThreadContext.put(THREAD_CONTEXT_KEY, "true");
+                TurnEvents.setRecording(false);
+                Exception failure = null;
+                try {
+                    play();
+                } catch (ReflectiveOperationException | IOException | RuntimeException e) {
+                    failure = e;
+                    stoppedBy = e.toString();
+                } finally {
+                    elapsedNanos = System.nanoTime() - startNanos;
+                    ThreadContext.remove(THREAD_CONTEXT_KEY);
+                }
+                if (failure != null) {
+                    logger.warn("Warm-up failed", failure);
+                }
+            }
+        }, "warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Start warming up with a bot class, unless a warm-up already ran in this
+     * process or the system property turns it off.
+     *
+     * @param botClass Needs a public no argument constructor.
+     * @return The running warm-up, or null.
+     */
+    public static WarmUp start(Class<? extends AdvancedBot> botClass) {
+        if ("false".equals(System.getProperty(PROPERTY)) || !started.compareAndSet(false, true)) {
+            return null;
+        }
+        WarmUp warmUp = new WarmUp(botClass);
+        warmUp.thread.start();
+        return warmUp;
+    }
+
+    /**
+     * Stop after the current move and wait for it, at most STOP_WAIT_MS, so
+     * that the game does not share the processor with the warm-up.
+     */
+    public void stop() {
+        stopRequested = true;
+        try {
+            thread.join(STOP_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("Warm-up still running {}ms after it was stopped", STOP_WAIT_MS);
+        }
+    }
+
+    /**
+     * Wait for the warm-up to stop, at most STOP_WAIT_MS, and log what it
+     * did. The first turn of the game is logged next to the cold first move
+     * of the warm-up, which was on another board, so the two are only a rough
+     * comparison.
+     *
+     * @param firstTurnNanos Time the bot took for the first move of the game.
+     */
+    public void report(long firstTurnNanos) {
+        stopRequested = true;
+        try {
+            thread.join(STOP_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (thread.isAlive()) {
+            logger.warn("Warm-up still running {}ms after it was stopped, not reported", STOP_WAIT_MS);
+            return;
+        }
+        if (coldMoveNanos < 0) {
+            logger.info("Warm-up stopped by {} before its first move", stoppedBy);
+            return;
+        }
+        logger.info("Warm-up played {} moves of {} games in {}ms, stopped by {}. First turn of the game took {}us, "
+                + "the cold first move of the warm-up, on another board, {}us", moves, games,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), stoppedBy, TimeUnit.NANOSECONDS.toMicros(firstTurnNanos),
+                TimeUnit.NANOSECONDS.toMicros(coldMoveNanos));
+    }
+
+    private void play() throws ReflectiveOperationException, IOException {
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        boolean timed = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+        long compileMillis = timed ? compiler.getTotalCompilationTime() : 0;
+        int quietMoves = 0;
+        GameStateReader reader = new GameStateReader();
+        TerrainCache terrainCache = new TerrainCache(null);
+
+        while (!stopRequested) {
+            Random random = new Random(LocalServer.mix(SEED + games));
+            int size = BOARD_SIZES[games % BOARD_SIZES.length];
+            LocalGame game = new LocalGame("warm-up" + games, MapGenerator.generate(size, random),
+                    LocalGame.HEROES * LocalServer.DEFAULT_TURNS, random, botClass.getSimpleName());
+            AdvancedBot bot = botClass.newInstance();
+            AdvancedGameState state = null;
+            bot.setup();
+            try {
+                game.playOthers();
+                while (!game.isFinished() && !stopRequested) {
+                    String json = gson.toJson(game.toGameState("warm-up", null, null));
+                    TurnEvents.Span parse = TurnEvents.begin(TurnEvents.Phase.PARSE);
+                    reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+                    TurnEvents.startTurn(reader.getGameId(), reader.getTurn(), reader.getBoardSize());
+                    parse.record();
+                    TurnEvents.Span update = TurnEvents.begin(TurnEvents.Phase.STATE_UPDATE);
+                    state = state == null ? new AdvancedGameState(reader, terrainCache)
+                            : new AdvancedGameState(state, reader);
+                    update.record();
+
+                    long moveStart = System.nanoTime();
+                    TurnEvents.Span thinking = TurnEvents.begin(TurnEvents.Phase.MOVE);
+                    BotMove move = bot.move(state);
+                    thinking.record();
+                    if (coldMoveNanos < 0) {
+                        coldMoveNanos = System.nanoTime() - moveStart;
+                    }
+                    game.playClient(move.toString());
+                    moves++;
+
+                    if (timed) {
+                        long now = compiler.getTotalCompilationTime();
+                        quietMoves = now == compileMillis ? quietMoves + 1 : 0;
+                        compileMillis = now;
+                    }
+                    if (moves >= MAX_MOVES) {
+                        stoppedBy = MAX_MOVES + " moves";
+                        return;
+                    }
+                    if (timed && moves >= MIN_MOVES && quietMoves >= QUIET_MOVES) {
+                        stoppedBy = "the JIT compiler";
+                        return;
+                    }
+                }
+            } finally {
+                bot.shutdown();
+                games++;
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package mybot;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The numbers MyBot decides with. They used to be constants in the decision
+ * makers and the pathfinder, and the defaults are those constants, so a bot
+ * with the defaults plays exactly as before.
+ * <p>
+ * Parameters can be written as text, NAME=value separated by commas, for
+ * example "THREAT_COST=6,GOLD_MARGIN=80". Missing parameters keep their
+ * defaults. Instances never change, with() makes a changed copy.
+ */
+public final class BotParameters {
+
+    /**
+     * System property with parameters for bots made with the no argument
+     * constructor of MyBot.
+     */
+    public static final String PROPERTY = "vindinium.botParameters";
+
+    /**
+     * Every parameter with its default and the range searched when tuning.
+     */
+    public enum Parameter {
+
+        /**
+         * Added to the movement cost of tiles next to an enemy, less for each
+         * step further away.
+         */
+        THREAT_COST(8, 0, 20),
+        /**
+         * How far from an enemy the threat cost reaches.
+         */
+        THREAT_RADIUS(4, 0, 8),
+        /**
+         * Added to the movement cost of the tile of an enemy.
+         */
+        SPAWN_POINT_COST(15, 0, 60),
+        /**
+         * Fight enemies that can be reached in fewer moves than this.
+         */
+        COMBAT_RADIUS(2, 0, 6),
+        /**
+         * In a fight next to a pub, leave for a mine above this life.
+         */
+        COMBAT_LEAVE_PUB_LIFE(90, 20, 100),
+        /**
+         * In a fight next to a pub, drink below this life.
+         */
+        COMBAT_DRINK_LIFE(50, 1, 100),
+        /**
+         * Value of hitting an enemy when choosing a move in a fight.
+         */
+        DEALT_DAMAGE_VALUE(21, 0, 60),
+        /**
+         * Value lost for each enemy that can hit me, when choosing a move in a
+         * fight.
+         */
+        RECEIVED_DAMAGE_VALUE(20, 0, 60),
+        /**
+         * Heal when next to a pub and below this life.
+         */
+        ALMOST_FULL_LIFE(90, 20, 100),
+        /**
+         * Camp at a pub when I have this much more gold than every enemy.
+         */
+        GOLD_MARGIN(50, 0, 400),
+        /**
+         * Camp at a pub only when I have this many more mines than every
+         * enemy.
+         */
+        MINE_MARGIN(1, 0, 5),
+        /**
+         * When camping, stay next to the pub above this life.
+         */
+        CAMP_LIFE(50, 1, 100),
+        /**
+         * Go to a pub instead of a mine if life at the mine would be below
+         * this.
+         */
+        HEALTH_THRESHOLD(50, 21, 100);
+
+        private final int defaultValue;
+        private final int min;
+        private final int max;
+
+        Parameter(int defaultValue, int min, int max) {
+            this.defaultValue = defaultValue;
+            this.min = min;
+            this.max = max;
+        }
+
+        public int getDefault() {
+            return defaultValue;
+        }
+
+        public int getMin() {
+            return min;
+        }
+
+        public int getMax() {
+            return max;
+        }
+    }
+
+    public static final BotParameters DEFAULTS = new BotParameters(defaultValues());
+
+    private final int[] values;
+
+    private BotParameters(int[] values) {
+        this.values = values;
+    }
+
+    private static int[] defaultValues() {
+        Parameter[] parameters = Parameter.values();
+        int[] values = new int[parameters.length];
+        for (Parameter p : parameters) {
+            values[p.ordinal()] = p.getDefault();
+        }
+        return values;
+    }
+
+    /**
+     * @return The parameters of the system property, or the defaults if it
+     * is not set.
+     */
+    public static BotParameters fromSystemProperty() {
+        String text = System.getProperty(PROPERTY);
+        return text == null ? DEFAULTS : parse(text);
+    }
+
+    /**
+     * @param text NAME=value pairs separated by commas.
+     * @return Defaults changed by the pairs.
+     * @throws IllegalArgumentException If a name is unknown or a value is not
+     * a number.
+     */
+    public static BotParameters parse(String text) {
+        BotParameters parameters = DEFAULTS;
+        for (String pair : text.split(",")) {
+            pair = pair.trim();
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected NAME=value, got " + pair);
+            }
+            Parameter p = Parameter.valueOf(pair.substring(0, eq).trim());
+            parameters = parameters.with(p, Integer.parseInt(pair.substring(eq + 1).trim()));
+        }
+        return parameters;
+    }
+
+    public int get(Parameter p) {
+        return values[p.ordinal()];
+    }
+
+    /**
+     * @return A copy with one parameter changed, kept within its range.
+     */
+    public BotParameters with(Parameter p, int value) {
+        int[] changed = values.clone();
+        changed[p.ordinal()] = Math.max(p.getMin(), Math.min(p.getMax(), value));
+        return new BotParameters(changed);
+    }
+
+    /**
+     * A copy with every parameter moved by a normally distributed step.
+     *
+     * @param random Source of the steps.
+     * @param scale Standard deviation of the steps as a part of the range of
+     * each parameter.
+     * @return The moved parameters, kept within their ranges.
+     */
+    public BotParameters mutate(Random random, double scale) {
+        BotParameters mutated = this;
+        for (Parameter p : Parameter.values()) {
+            double step = random.nextGaussian() * scale * (p.getMax() - p.getMin());
+            mutated = mutated.with(p, (int) Math.round(get(p) + step));
+        }
+        return mutated;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BotParameters && Arrays.equals(values, ((BotParameters) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    /**
+     * @return Every parameter as NAME=value pairs, which parse() reads back.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Parameter p : Parameter.values()) {
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(p.name()).append('=').append(get(p));
+        }
+        return text.toString();
+    }
+}
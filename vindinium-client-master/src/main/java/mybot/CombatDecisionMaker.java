@@ -3,8 +3,6 @@ package mybot;
 import com.brianstempin.vindiniumclient.bot.BotMove;
 import com.brianstempin.vindiniumclient.bot.advanced.*;
 import com.brianstempin.vindiniumclient.dto.GameState.*;
-import java.util.Map;
-import java.util.Set;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -43,7 +41,7 @@ public class CombatDecisionMaker implements DecisionMaker {
         this.gameState = pathfinder.getGameState();
         this.pathfinder = pathfinder;
 
-        int combatRadius = 2;
+        int combatRadius = pathfinder.getParameters().get(BotParameters.Parameter.COMBAT_RADIUS);
 
         Hero closest = this.pathfinder.getClosestEnemy();
         Vertex closestPos = pathfinder.positionToVertex(closest.getPos());
@@ -73,9 +71,10 @@ public class CombatDecisionMaker implements DecisionMaker {
         this.pathfinder = pathfinder;
         this.gameState = pathfinder.getGameState();
         this.me = this.gameState.getMe();
+        BotParameters parameters = pathfinder.getParameters();
 
         if (pathfinder.standsAdjacentToInn(me) && pathfinder.standsAdjacentToInn(closestEnemy)) {
-            if (me.getLife() > 90) {
+            if (me.getLife() > parameters.get(BotParameters.Parameter.COMBAT_LEAVE_PUB_LIFE)) {
                 return pathfinder.goToClosestMine();
             } else {
                 return pathfinder.goToClosestPub();
@@ -83,7 +82,7 @@ public class CombatDecisionMaker implements DecisionMaker {
         }
 
         if (pathfinder.calcDistance(me.getPos(), pathfinder.getClosestPub().getPosition()) == 1) {
-            if (me.getLife() < 50) {
+            if (me.getLife() < parameters.get(BotParameters.Parameter.COMBAT_DRINK_LIFE)) {
                 return pathfinder.moveTowards(pathfinder.getClosestPub());
             } else {
                 return BotMove.STAY;
@@ -134,48 +133,41 @@ public class CombatDecisionMaker implements DecisionMaker {
      * vertex is.
      * <p>
      * Dealing damage and going closer to an enemy increase value, and receiving
-     * damage reduces it.
+     * damage reduces it. Closer means fewer moves around the walls, looked up
+     * in the terrain distances.
      *
      * @param v Vertex to be evaluated.
      * @return
      */
     private int evaluateVertex(Vertex v) {
-        logger.info("Evaluating vertex " + v);
         int value = 0;
-        Map<Position, Hero> heroes = this.gameState.getHeroesByPosition();
+        ThreatMap threats = pathfinder.getThreatMap();
+        int tile = v.getIndex();
 
         int invalidVertex = -999;
-        int dealtDmgValue = 21;
-        int receivedDmgValue = -20;
+        int dealtDmgValue = pathfinder.getParameters().get(BotParameters.Parameter.DEALT_DAMAGE_VALUE);
+        int receivedDmgValue = -pathfinder.getParameters().get(BotParameters.Parameter.RECEIVED_DAMAGE_VALUE);
         
-        Hero h = heroes.get(v.getPosition());
-        if (h != null && h.getId() != me.getId()) {
-            logger.info("Vertex is already occupied. Invalid vertex.");
+        if (threats.isEnemyAt(tile)) {
+            DecisionTrace.record(DecisionTrace.VERTEX_SCORE, tile, invalidVertex, 0);
             return invalidVertex;
         }
 
-        for (Vertex adj : v.getAdjacentVertices()) {
-            h = heroes.get(adj.getPosition());
-            if (h != null) {
-                value += dealtDmgValue;
+        // Mines and pubs have no adjacent vertices, so nothing is hit from them
+        if (gameState.getTileGraph().isPassable(tile)) {
+            value += dealtDmgValue * threats.countAdjacentEnemies(tile);
+            if (v != pathfinder.getCurrentVertex()) {
+                value += dealtDmgValue; //I am next to every vertex I can move to, and count as a hero there.
             }
-
         }
 
-        for (Hero hero : gameState.getHeroesById().values()) {
-            if (hero.getId() != me.getId()) {
-                Set<Vertex> threatened = pathfinder.threatenedVertices(hero);
-                if (threatened.contains(v)) {
-                    value += receivedDmgValue;
-                }
-            }
-        }
+        value += receivedDmgValue * threats.countThreats(tile);
         Position enemyPos = this.closestEnemy.getPos();
-        if (pathfinder.calcDistance(v.getPosition(), enemyPos) < pathfinder.calcDistance(pathfinder.getCurrentPosition(), enemyPos)) {
-            value++; //If two vertices are otherwise equal, go towards closest enemy. 
+        if (pathfinder.terrainDistance(v.getPosition(), enemyPos) < pathfinder.terrainDistance(pathfinder.getCurrentPosition(), enemyPos)) {
+            value++; //If two vertices are otherwise equal, go towards closest enemy, around walls. 
         }
 
-        logger.info("Value of v=" + value);
+        DecisionTrace.record(DecisionTrace.VERTEX_SCORE, tile, value, 0);
 
         return value;
 
@@ -13,9 +13,6 @@ public class HealingDecisionMaker implements DecisionMaker {
 
     private final static Logger logger = LogManager.getLogger(HealingDecisionMaker.class);
 
-    private final int healthThreshold = 50;
-    private final int almostFull = 90;
-
     /**
      * Heal if health is less than 50, or standing next to a pub and health is
      * less than 80.
@@ -27,11 +24,14 @@ public class HealingDecisionMaker implements DecisionMaker {
     public boolean wantsToAct(Pathfinder pathfinder) {
         AdvancedGameState gameState = pathfinder.getGameState();
 
+        int almostFull = pathfinder.getParameters().get(BotParameters.Parameter.ALMOST_FULL_LIFE);
+        int healthThreshold = pathfinder.getParameters().get(BotParameters.Parameter.HEALTH_THRESHOLD);
+
         int myHealth = gameState.getMe().getLife();
         if (myHealth < almostFull && pathfinder.standsAdjacentToInn(pathfinder.getGameState().getMe())) {
             logger.info("Healing to full HP.");
             return true;
-        } else if (myHealth < this.healthThreshold) {
+        } else if (myHealth < healthThreshold) {
             logger.info("Low HP. Healing.");
             return false;
         } else {
@@ -0,0 +1,138 @@
+package mybot;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap over vertex indices, the priority queue of the shortest path
+ * search. Keeps track of where each vertex is in the heap, so a queued vertex
+ * can have its priority decreased in O(log n).
+ * <p>
+ * Vertices with equal priority are polled in the order of their index.
+ */
+public class IndexedMinHeap {
+
+    /**
+     * Vertex indices in heap order.
+     */
+    private final int[] heap;
+    /**
+     * Position of each vertex in the heap, or -1 if the vertex is not queued.
+     */
+    private final int[] heapPosition;
+    /**
+     * Priority of each queued vertex.
+     */
+    private final int[] priorities;
+    private int size;
+
+    /**
+     * @param capacity Number of vertices. Vertex indices must be smaller than
+     * this.
+     */
+    public IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.heapPosition = new int[capacity];
+        this.priorities = new int[capacity];
+        Arrays.fill(heapPosition, -1);
+    }
+
+    /**
+     * Add a vertex that is not in the queue.
+     *
+     * @param vertex Index of the vertex.
+     * @param priority Priority of the vertex. Smaller is polled first.
+     */
+    public void insert(int vertex, int priority) {
+        priorities[vertex] = priority;
+        heap[size] = vertex;
+        heapPosition[vertex] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lower the priority of a vertex that is already in the queue.
+     *
+     * @param vertex Index of the vertex.
+     * @param priority New priority. Must not be greater than the old one.
+     */
+    public void decreaseKey(int vertex, int priority) {
+        priorities[vertex] = priority;
+        siftUp(heapPosition[vertex]);
+    }
+
+    /**
+     * Remove the vertex with the smallest priority.
+     *
+     * @return Index of the removed vertex.
+     */
+    public int poll() {
+        int min = heap[0];
+        heapPosition[min] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            heapPosition[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * @return True if there are no vertices in the queue.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all vertices from the queue.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            heapPosition[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * @return True if vertex a should be polled before vertex b.
+     */
+    private boolean before(int a, int b) {
+        return priorities[a] < priorities[b] || (priorities[a] == priorities[b] && a < b);
+    }
+
+    private void siftUp(int i) {
+        int vertex = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(vertex, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapPosition[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = vertex;
+        heapPosition[vertex] = i;
+    }
+
+    private void siftDown(int i) {
+        int vertex = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], vertex)) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapPosition[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = vertex;
+        heapPosition[vertex] = i;
+    }
+}
@@ -27,8 +27,8 @@ public class InnCamperDecisionMaker implements DecisionMaker {
         Hero me = gameState.getMe();
         int myMines = me.getMineCount();
         int myGold = me.getGold();
-        int goldMargin = 50;
-        int mineMargin = 1;
+        int goldMargin = pathfinder.getParameters().get(BotParameters.Parameter.GOLD_MARGIN);
+        int mineMargin = pathfinder.getParameters().get(BotParameters.Parameter.MINE_MARGIN);
 
         for (Hero enemy : gameState.getHeroesById().values()) {
             if (enemy.getId() == me.getId()) {
@@ -52,7 +52,8 @@ public class InnCamperDecisionMaker implements DecisionMaker {
     public BotMove takeAction(Pathfinder pathfinder) {
         AdvancedGameState gameState = pathfinder.getGameState();
         logger.info("I am the richest hero. ");
-        if (pathfinder.standsAdjacentToInn(pathfinder.getGameState().getMe()) && gameState.getMe().getLife() > 50) {
+        if (pathfinder.standsAdjacentToInn(pathfinder.getGameState().getMe())
+                && gameState.getMe().getLife() > pathfinder.getParameters().get(BotParameters.Parameter.CAMP_LIFE)) {
             logger.info("Camping at an inn.");
             return BotMove.STAY;
         } else {
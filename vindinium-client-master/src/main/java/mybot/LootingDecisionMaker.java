@@ -4,6 +4,7 @@ import com.brianstempin.vindiniumclient.bot.BotMove;
 import com.brianstempin.vindiniumclient.bot.advanced.Vertex;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
 
 /**
  * Decides whether to loot a mine and which mine to loot.
@@ -34,13 +35,12 @@ public class LootingDecisionMaker implements DecisionMaker {
         if (goal == null) {
             return pathfinder.moveTowards(pathfinder.getClosestPub());
         }
-        logger.info("Going to mine at " + goal + ", distance " + goal.getDistance());
+        logger.info("Going to mine at {}, distance {}", goal, Unbox.box(pathfinder.getDistance(goal)));
 
-        int healThreshold = 50;
+        int healThreshold = pathfinder.getParameters().get(BotParameters.Parameter.HEALTH_THRESHOLD);
         int myHealth = pathfinder.getGameState().getMe().getLife();
 
         if (myHealth - pathfinder.movesToReach(goal) < healThreshold) {
-            logger.info("moves to reach goal=" + pathfinder.movesToReach(goal));
             logger.info("Would go to a mine, but HP will drain below the health threshold. Going to pub instead.");
             return pathfinder.goToClosestPub();
         } else {
@@ -1,15 +1,24 @@
 package mybot;
 
-import com.brianstempin.vindiniumclient.bot.advanced.AdvancedBot;
 import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.bot.advanced.DecisionTrace;
+import com.brianstempin.vindiniumclient.bot.advanced.SpeculativeBot;
+import com.brianstempin.vindiniumclient.bot.advanced.TurnEvents;
 import com.brianstempin.vindiniumclient.bot.BotMove;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
 
 /**
  * Main bot class that is called every turn to decide next move. 
  */
-public class MyBot implements AdvancedBot {
+public class MyBot implements SpeculativeBot {
+
+    /**
+     * System property, true makes bots made without the speculate argument
+     * prepare their next turn while the move is sent.
+     */
+    public static final String SPECULATE_PROPERTY = "vindinium.speculate";
 
     /**
      * Contains decision makers which simulate a decision tree.
@@ -21,8 +30,60 @@ public class MyBot implements AdvancedBot {
         new HealingDecisionMaker(),
         new LootingDecisionMaker()};
 
+    /**
+     * Names of the decision makers in the decision trace.
+     */
+    private final int[] decisionMakerIds = new int[decisionMakers.length];
+
+    /**
+     * Numbers the bot decides with.
+     */
+    private final BotParameters parameters;
+
+    /**
+     * Prepares the shortest path tree of the next turn while the move is sent,
+     * or null if the bot does not speculate.
+     */
+    private final TreeSpeculator speculator;
+    /**
+     * Scratch of the pathfinders when the bot does not speculate.
+     */
+    private final SearchScratch scratch;
+
     private final static Logger logger = LogManager.getLogger(MyBot.class);
 
+    /**
+     * Bot with the parameters of the system property vindinium.botParameters,
+     * or the defaults if it is not set.
+     */
+    public MyBot() {
+        this(BotParameters.fromSystemProperty());
+    }
+
+    /**
+     * Bot that speculates if the system property vindinium.speculate is true.
+     *
+     * @param parameters Numbers the bot decides with.
+     */
+    public MyBot(BotParameters parameters) {
+        this(parameters, Boolean.getBoolean(SPECULATE_PROPERTY));
+    }
+
+    /**
+     * @param parameters Numbers the bot decides with.
+     * @param speculate True to build the shortest path tree of the next turn
+     * in a background thread while the move is sent, see TreeSpeculator. It
+     * is kept on few turns and saves little, so it is off by default.
+     */
+    public MyBot(BotParameters parameters, boolean speculate) {
+        this.parameters = parameters;
+        this.speculator = speculate ? new TreeSpeculator(parameters) : null;
+        this.scratch = speculate ? null : new SearchScratch();
+        for (int i = 0; i < decisionMakers.length; i++) {
+            decisionMakerIds[i] = DecisionTrace.nameId(decisionMakers[i].getName());
+        }
+    }
+
     /**
      * Goes through decision makers until one of them wants to act. Then control
      * is passed to that DM.
@@ -35,30 +96,53 @@ public class MyBot implements AdvancedBot {
         long startTime = System.nanoTime();
 
         logger.info("Creating pathfinder.");
-        Pathfinder pathfinder = new Pathfinder(gameState);
+        SearchScratch turnScratch = speculator != null ? speculator.claim(gameState) : scratch;
+        Pathfinder pathfinder = new Pathfinder(gameState, turnScratch, parameters);
 
         logger.info("Choosing decision maker.");
         BotMove move = null;
-        for (DecisionMaker dm : decisionMakers) {
-            logger.info(dm.getName() + " thinks...");
-            if (dm.wantsToAct(pathfinder)) {
-                logger.info(dm.getName() + " shall lead me to glory!");
+        for (int i = 0; i < decisionMakers.length; i++) {
+            DecisionMaker dm = decisionMakers[i];
+            TurnEvents.setDecisionMaker(dm.getName());
+            TurnEvents.Span span = TurnEvents.begin(TurnEvents.Phase.DECISION_MAKER);
+            boolean acts = dm.wantsToAct(pathfinder);
+            DecisionTrace.record(DecisionTrace.DECISION_MAKER, decisionMakerIds[i], acts ? 1 : 0, 0);
+            if (acts) {
+                logger.info("{} shall lead me to glory!", dm.getName());
                 move = dm.takeAction(pathfinder);
+                span.record();
                 break;
             }
+            span.record();
         }
 
         if (move == null) {
             logger.info("No decision makers chosen. Staying still");
+            TurnEvents.setDecisionMaker(null);
             move = BotMove.STAY;
         }
         
         long stopTime = System.nanoTime();
         long turnTime = (stopTime - startTime);
-        logger.info("Turn time " + turnTime + "ns");
+        logger.info("Turn time {}ns", Unbox.box(turnTime));
         return move;
     }
 
+    /**
+     * Start building the shortest path tree of the next turn in the
+     * background, see TreeSpeculator. Does nothing if the bot does not
+     * speculate.
+     *
+     * @param gameState State the move was decided on.
+     * @param move The move about to be sent.
+     */
+    @Override
+    public void speculate(AdvancedGameState gameState, BotMove move) {
+        if (speculator != null) {
+            speculator.speculate(gameState, move);
+        }
+    }
+
     /**
      * Called before the start of the game. Does nothing.
      */
@@ -67,10 +151,25 @@ public class MyBot implements AdvancedBot {
     }
 
     /**
-     * Called at the end of the game. Does nothing. 
+     * Called at the end of the game. Stops the speculation thread.
      */
     @Override
     public void shutdown() {
+        if (speculator != null) {
+            speculator.shutdown();
+        }
+    }
+
+    public BotParameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return The speculator, for its hit counts, or null if the bot does not
+     * speculate.
+     */
+    public TreeSpeculator getSpeculator() {
+        return speculator;
     }
 
 }
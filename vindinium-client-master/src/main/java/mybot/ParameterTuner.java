@@ -0,0 +1,196 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedBot;
+import com.brianstempin.vindiniumclient.bot.simple.MurderBot;
+import com.brianstempin.vindiniumclient.server.Tournament;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LoggerContext;
+
+/**
+ * Tunes the parameters of MyBot with tournaments played in this process.
+ * <p>
+ * This is a random search around the best parameters so far. Each round the
+ * best parameters and a number of mutated copies of them play the same games
+ * against the same opponents, and the copy with the highest score becomes the
+ * best if it beats the original. The score is the win rate, with ties broken
+ * by average gold. The mutation step grows after a round that found better
+ * parameters and shrinks after one that did not. Every round plays new games,
+ * so the parameters do not fit a few boards.
+ * <p>
+ * Run it with
+ * <pre>
+ * java -cp vindiniumclient.jar mybot.ParameterTuner rounds games [candidates] [seed] [threads] [start parameters]
+ * </pre>
+ * and use the best parameters with -Dvindinium.botParameters=...
+ */
+public class ParameterTuner {
+
+    private static final double MIN_SCALE = 0.01;
+    private static final double MAX_SCALE = 0.3;
+    /**
+     * Kept here so its level is not lost if it is collected.
+     */
+    private static final java.util.logging.Logger murderBotLogger = java.util.logging.Logger.getLogger("murderbot");
+
+    private final ForkJoinPool pool;
+    private final List<Tournament.Entrant> opponents;
+    private final int games;
+    private final int candidates;
+    private final long seed;
+    private final Random random;
+
+    private BotParameters best;
+    private Tournament.Result bestResult;
+    /**
+     * Standard deviation of the mutation steps as a part of the range of each
+     * parameter.
+     */
+    private double scale = 0.1;
+
+    /**
+     * @param pool Pool to play the games on.
+     * @param opponents Three entrants to play against.
+     * @param games Games each candidate plays per round.
+     * @param candidates Mutated copies tried per round.
+     * @param seed Seed of the games and the mutations.
+     * @param start Parameters to start from.
+     */
+    public ParameterTuner(ForkJoinPool pool, List<Tournament.Entrant> opponents, int games, int candidates,
+            long seed, BotParameters start) {
+        if (opponents.size() != Tournament.SEATS - 1) {
+            throw new IllegalArgumentException("Need " + (Tournament.SEATS - 1) + " opponents");
+        }
+        this.pool = pool;
+        this.opponents = opponents;
+        this.games = games;
+        this.candidates = candidates;
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.best = start;
+    }
+
+    /**
+     * @param parameters Parameters of the bot.
+     * @return Entrant playing MyBot with the parameters.
+     */
+    public static Tournament.Entrant entrant(final BotParameters parameters) {
+        return new Tournament.AdvancedEntrant(parameters.equals(BotParameters.DEFAULTS) ? "MyBot" : "MyBot tuned") {
+            @Override
+            protected AdvancedBot newBot() {
+                return new MyBot(parameters);
+            }
+        };
+    }
+
+    /**
+     * Play games against the opponents.
+     *
+     * @param parameters Parameters of MyBot, entrant 0 of the result.
+     * @param firstGame Number of the first game.
+     * @return Result of the games.
+     */
+    public Tournament.Result evaluate(BotParameters parameters, int firstGame) {
+        List<Tournament.Entrant> entrants = new ArrayList<>();
+        entrants.add(entrant(parameters));
+        entrants.addAll(opponents);
+        return new Tournament(entrants, seed).play(pool, firstGame, games);
+    }
+
+    /**
+     * Play one round of the search.
+     *
+     * @param round Number of the round, decides the games.
+     * @return The best parameters after the round.
+     */
+    public BotParameters round(int round) {
+        int firstGame = round * games;
+        BotParameters roundBest = best;
+        Tournament.Result roundResult = evaluate(best, firstGame);
+        double bestScore = score(roundResult);
+        for (int c = 0; c < candidates; c++) {
+            BotParameters candidate = best.mutate(random, scale);
+            Tournament.Result result = evaluate(candidate, firstGame);
+            if (score(result) > bestScore) {
+                roundBest = candidate;
+                roundResult = result;
+                bestScore = score(result);
+            }
+        }
+        if (roundBest != best) {
+            scale = Math.min(MAX_SCALE, scale * 1.5);
+        } else {
+            scale = Math.max(MIN_SCALE, scale * 0.7);
+        }
+        best = roundBest;
+        bestResult = roundResult;
+        return best;
+    }
+
+    private static double score(Tournament.Result result) {
+        return result.getWinRate(0) + result.getAverageGold(0) / 1e6;
+    }
+
+    public BotParameters getBest() {
+        return best;
+    }
+
+    /**
+     * @return Result of the best parameters in the last round, null before
+     * the first.
+     */
+    public Tournament.Result getBestResult() {
+        return bestResult;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * Arguments: rounds games [candidates] [seed] [threads] [start parameters]
+     */
+    public static void main(String args[]) {
+        int rounds = Integer.parseInt(args[0]);
+        int games = Integer.parseInt(args[1]);
+        int candidates = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        BotParameters start = args.length > 5 ? BotParameters.parse(args[5]) : BotParameters.DEFAULTS;
+
+        quietLogging();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Tournament.Entrant> opponents = Arrays.asList(
+                entrant(BotParameters.DEFAULTS),
+                Tournament.simple(MurderBot.class),
+                Tournament.RANDOM_HERO);
+        ParameterTuner tuner = new ParameterTuner(pool, opponents, games, candidates, seed, start);
+        for (int round = 0; round < rounds; round++) {
+            BotParameters before = tuner.getBest();
+            tuner.round(round);
+            System.out.println("Round " + (round + 1) + (tuner.getBest().equals(before) ? ", no better parameters"
+                    : ", new best " + tuner.getBest()) + ", step " + String.format("%.3f", tuner.getScale()));
+            System.out.println(tuner.getBestResult());
+        }
+        System.out.println("Best parameters: " + tuner.getBest());
+        pool.shutdown();
+    }
+
+    /**
+     * Thousands of games would write gigabytes of move logs, keep warnings
+     * only.
+     */
+    private static void quietLogging() {
+        LoggerContext context = (LoggerContext) LogManager.getContext(false);
+        context.getConfiguration().getLoggerConfig(LogManager.ROOT_LOGGER_NAME)
+                .setLevel(org.apache.logging.log4j.Level.WARN);
+        context.updateLoggers();
+        murderBotLogger.setLevel(Level.WARNING);
+    }
+}
@@ -3,16 +3,18 @@ package mybot;
 import com.brianstempin.vindiniumclient.bot.BotMove;
 import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
 import com.brianstempin.vindiniumclient.bot.advanced.Mine;
+import com.brianstempin.vindiniumclient.bot.advanced.TerrainDistances;
+import com.brianstempin.vindiniumclient.bot.advanced.TileGraph;
+import com.brianstempin.vindiniumclient.bot.advanced.DecisionTrace;
+import com.brianstempin.vindiniumclient.bot.advanced.TurnEvents;
 import com.brianstempin.vindiniumclient.bot.advanced.Vertex;
 import com.brianstempin.vindiniumclient.dto.GameState.*;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
 
 /**
  * Processes an advanced game state to find whatever needs to be found.
@@ -35,131 +37,203 @@ public class Pathfinder {
      * Contains game data processed from servers JSON response.
      */
     private final AdvancedGameState gameState;
+    /**
+     * The board as flat arrays.
+     */
+    private final TileGraph graph;
+    /**
+     * Numbers the movement costs and the decision makers use.
+     */
+    private final BotParameters parameters;
+    /**
+     * Movement cost of entering each tile.
+     */
+    private final int[] costs;
+    /**
+     * Shortest paths from my position with the movement costs.
+     */
+    private final ShortestPathTree tree;
+    private final SearchScratch scratch;
+    /**
+     * Version of the tree after my last update. If the tree has another
+     * version, some other pathfinder has used it since.
+     */
+    private int treeVersion;
+    /**
+     * Tiles enemies stand next to or can hit, or null before it is needed.
+     */
+    private ThreatMap threatMap;
+
+    /**
+     * True after the movement costs have been calculated.
+     */
+    private boolean costsCalculated;
+    /**
+     * True after the threat weighted search has been run.
+     */
+    private boolean searched;
 
     private static final Logger logger = LogManager.getLogger(Pathfinder.class);
 
     /**
-     * Create a new pathfinder from game state. Adds movement cost based on
-     * enemy hero locations and spawn points and calculates distance to every
-     * vertex using Dijkstra's algorithm.
+     * Create a new pathfinder from game state. Distances that take enemy
+     * heroes into account are calculated when they are first needed, in the
+     * search scratch of the calling thread.
      *
      * @param gameState Current game state.
      */
     public Pathfinder(AdvancedGameState gameState) {
+        this(gameState, SearchScratch.forCurrentThread());
+    }
+
+    /**
+     * Create a new pathfinder that searches in the given scratch. The shortest
+     * path tree of the scratch is kept instead of computed from scratch if it
+     * was last built for the same position and movement costs.
+     *
+     * @param gameState Current game state.
+     * @param scratch Arrays to search in.
+     */
+    public Pathfinder(AdvancedGameState gameState, SearchScratch scratch) {
+        this(gameState, scratch, BotParameters.DEFAULTS);
+    }
+
+    /**
+     * Create a new pathfinder that searches in the given scratch with the
+     * movement costs of the given parameters.
+     *
+     * @param gameState Current game state.
+     * @param scratch Arrays to search in.
+     * @param parameters Numbers of the bot.
+     */
+    public Pathfinder(AdvancedGameState gameState, SearchScratch scratch, BotParameters parameters) {
         this.gameState = gameState;
+        this.parameters = parameters;
         this.me = gameState.getMe();
         this.mines = new ArrayList<>();
         this.pubs = new ArrayList<>();
+        this.graph = gameState.getTileGraph();
+        this.costs = new int[graph.getTileCount()];
+        this.tree = scratch.getTree();
+        this.scratch = scratch;
+        logger.info("Current position {}", gameState.getMe().getPos());
+    }
+
+    /**
+     * Adds movement cost based on enemy hero locations and spawn points. Does
+     * nothing if this has already been done.
+     */
+    private void calculateCosts() {
+        if (costsCalculated) {
+            return;
+        }
+        costsCalculated = true;
 
+        TurnEvents.Span span = TurnEvents.begin(TurnEvents.Phase.THREAT_COSTS);
         resetVertices();
         for (Hero h : gameState.getHeroesById().values()) {
             if (h.getId() != me.getId()) {
                 initVertexCosts(h);
             }
         }
-        resetInnAndMineCost();
-        dijkstra();
-        logger.info("Current position " + gameState.getMe().getPos());
+        span.record();
     }
 
     /**
-     * Dijkstra's algorithm calculates the distance to every vertex and makes a list of all mines and pubs. 
+     * Calculates distance to every vertex with the movement costs and makes a
+     * list of all reachable mines and pubs. Does nothing if this has already
+     * been done.
      */
-    private void dijkstra() {
-        List<Vertex> q = new ArrayList<>();
-        Vertex source = gameState.getBoardGraph().get(me.getPos());
-
-        for (Vertex v : gameState.getBoardGraph().values()) {
-            if (v.getPosition().equals(source.getPosition())) {
-                v.setDistance(0);
-            } else {
-                v.setDistance(Integer.MAX_VALUE);
+    private void search() {
+        if (searched) {
+            if (tree.getVersion() != treeVersion) {
+                updateTree();
             }
-            v.setParent(null);
-            q.add(v);
+            return;
         }
+        searched = true;
 
-        while (!q.isEmpty()) {
-            Vertex u = minDistVertex(q);
-            if (gameState.getMines().containsKey(u.getPosition())) {
-                mines.add(u);
-            } else if (gameState.getPubs().containsKey(u.getPosition())) {
-                pubs.add(u);
-            } else {
-                for (Vertex v : u.getAdjacentVertices()) {
-                    int alt = u.getDistance() + v.getCost();
-                    if (alt < v.getDistance()) {
-                        v.setDistance(alt);
-                        v.setParent(u);
-                    }
-                }
-            }
+        updateTree();
+        for (Position p : gameState.getMines().keySet()) {
+            addIfReachable(mines, p);
+        }
+        for (Position p : gameState.getPubs().keySet()) {
+            addIfReachable(pubs, p);
         }
     }
 
     /**
-     * Get the vertex with the smallest distance and remove it from the list.
+     * Update the shortest path tree for a position I am expected to move to,
+     * with the movement costs of this state. A pathfinder of the next turn
+     * on the same scratch then keeps it if the guess was right.
      *
-     * @param list A list of unprocessed vertices.
-     * @return Vertex with the smallest distance.
+     * @param tile Tile index of the expected position.
      */
-    private Vertex minDistVertex(List<Vertex> list) { //This is terrible in every way, but because Vindinium maps 
-        Vertex min = null;                            // are so small, it does not matter performance wise. 
-        int minDist = Integer.MAX_VALUE;              //Still, should be fixed one day. 
+    void prepareTree(int tile) {
+        calculateCosts();
+        TurnEvents.Span span = TurnEvents.begin(TurnEvents.Phase.SEARCH);
+        tree.update(graph, tile, costs);
+        scratch.treeUpdated(gameState, parameters);
+        span.record();
+    }
 
-        for (Vertex v : list) {
-            if (v.getDistance() < minDist) {
-                min = v;
-                minDist = v.getDistance();
-            }
+    /**
+     * @return Movement cost of entering each tile this turn. Not a copy.
+     */
+    int[] getCosts() {
+        calculateCosts();
+        return costs;
+    }
+
+    /**
+     * Make the tree of the scratch mine. If no enemy moved since the turn its
+     * costs came from, they are the same and neither they nor the tree are
+     * calculated again.
+     */
+    private void updateTree() {
+        scratch.treeUsed();
+        int source = graph.tileIndex(me.getPos());
+        if (scratch.hasTreeOf(gameState, parameters, source)) {
+            logger.info("No enemy moved, keeping shortest paths");
+            treeVersion = tree.getVersion();
+            return;
         }
-        list.remove(min);
+        calculateCosts();
+        TurnEvents.Span span = TurnEvents.begin(TurnEvents.Phase.SEARCH);
+        tree.update(graph, source, costs);
+        scratch.treeUpdated(gameState, parameters);
+        treeVersion = tree.getVersion();
+        span.record();
+    }
 
-        return min;
+    private void addIfReachable(List<Vertex> list, Position p) {
+        Vertex v = gameState.getVertex(p);
+        if (tree.getDistance(v.getIndex()) != ShortestPathTree.UNREACHABLE) {
+            list.add(v);
+        }
     }
 
     /**
      * Give vertices a movement cost based on enemy locations and spawn points.
-     * This is done with a bfs to a certain depth.
+     * The threatened tiles around each tile are found once per board, see
+     * ThreatStencils.
      */
     private void initVertexCosts(Hero h) {
-        final int SPAWN_POINT_COST = 15;
-        final int THREAT_COST = 8;
-        final int THREAT_RADIUS = 4;
+        final int SPAWN_POINT_COST = parameters.get(BotParameters.Parameter.SPAWN_POINT_COST);
+        final int THREAT_COST = parameters.get(BotParameters.Parameter.THREAT_COST);
+        final int THREAT_RADIUS = parameters.get(BotParameters.Parameter.THREAT_RADIUS);
         final int UNPASSABLE = 1000;
 
-        logger.info("Adding threats from hero at " + h.getPos());
-        gameState.getBoardGraph().get(h.getPos()).addCost(SPAWN_POINT_COST);
+        logger.info("Adding threats from hero at {}", h.getPos());
+        int enemyPos = graph.tileIndex(h.getPos());
+        costs[enemyPos] += SPAWN_POINT_COST;
+        costs[enemyPos] += UNPASSABLE;
 
-        Vertex enemyPos = gameState.getBoardGraph().get(h.getPos());
-        enemyPos.addCost(UNPASSABLE);
-
-        Queue<Vertex> q = new ArrayDeque<>();
-        Set<Vertex> visited = new HashSet<>();
-        visited.add(enemyPos);
-        q.add(enemyPos);
-
-        int currentDepth = 0;
-        int elementsToDepthIncrease = 1;
-        int nextElementsToDepthIncrease = 0;
-
-        while (!q.isEmpty()) {
-            Vertex current = q.poll();
-            current.addCost(THREAT_COST - currentDepth);
-            nextElementsToDepthIncrease += current.getAdjacentVertices().size();
-            if (--elementsToDepthIncrease == 0) {
-                if (++currentDepth > THREAT_RADIUS) {
-                    return;
-                }
-                elementsToDepthIncrease = nextElementsToDepthIncrease;
-                nextElementsToDepthIncrease = 0;
-            }
-
-            for (Vertex adj : current.getAdjacentVertices()) {
-                if (!visited.contains(adj)) {
-                    q.add(adj);
-                    visited.add(adj);
-                }
+        ThreatStencils stencils = ThreatStencils.forGraph(graph, THREAT_RADIUS);
+        for (int depth = 0; depth <= THREAT_RADIUS; depth++) {
+            int end = stencils.end(enemyPos, depth);
+            for (int i = stencils.start(enemyPos, depth); i < end; i++) {
+                costs[stencils.tile(i)] += Math.max(0, THREAT_COST - depth);
             }
         }
     }
@@ -195,10 +269,7 @@ public class Pathfinder {
      * some other owner.
      */
     public boolean heroOwns(Mine mine, Hero hero) {
-        if (mine.getOwner() == null) {
-            return false;
-        }
-        return mine.getOwner().getId() == hero.getId();
+        return mine.getOwnerId() == hero.getId();
     }
 
     /**
@@ -212,76 +283,109 @@ public class Pathfinder {
     }
 
     /**
-     * Move towards the goal vertex by tracing vertex parents until we arrive at
-     * the vertex adjacent to current position.
+     * Move towards the goal vertex. The first step of the shortest path is
+     * recorded by the search, so this does not trace the path.
      *
      * @param goal The goal vertex.
      * @return Which direction the next move will go to.
      */
     public BotMove moveTowards(Vertex goal) {
+        search();
         BotMove move = BotMove.STAY;
         if (goal == null) {
             logger.info("Goal is null. Staying still.");
             return move;
         }
 
-        logger.info("Moving towards " + goal.getPosition());
-
+        int goalTile = goal.getIndex();
         Position currentPos = getCurrentPosition();
         if (calcDistance(currentPos, goal.getPosition()) == 0) {
             logger.info("Goal is the current position. Staying still.");
             return move;
         }
 
-        while (calcDistance(currentPos, goal.getPosition()) != 1) {
-            goal = goal.getParent();
-        }
-
-        int goalX = goal.getPosition().getX();
-        int goalY = goal.getPosition().getY();
-
-        if (goalX - currentPos.getX() == 1) {
-            move = BotMove.SOUTH;
-        } else if (goalX - currentPos.getX() == -1) {
-            move = BotMove.NORTH;
-        } else if (goalY - currentPos.getY() == 1) {
-            move = BotMove.EAST;
-        } else if (goalY - currentPos.getY() == -1) {
-            move = BotMove.WEST;
+        int step = tree.getFirstStep(goalTile);
+        if (step < 0) {
+            logger.info("Goal {} cannot be reached. Staying still.", goal.getPosition());
+            return move;
         }
+        move = graph.direction(graph.tileIndex(currentPos), step);
 
-        logger.info("Move direction:" + move);
+        DecisionTrace.record(DecisionTrace.PATH_TARGET, goalTile, tree.getHops(goalTile), move.ordinal());
         return move;
     }
 
     /**
-     * Count how many moves are required to reach goal vertex.
+     * Count how many moves are required to reach goal vertex. Reaching means
+     * standing next to it, so the last move onto the goal is not counted.
      *
      * @param goal Goal vertex
-     * @return Amount of moves to reach goal.
+     * @return Amount of moves to reach goal, or ShortestPathTree.UNREACHABLE.
      */
     public int movesToReach(Vertex goal) {
+        search();
         if (goal == null) {
             return 0;
         }
-        int moves = 0;
-        while (calcDistance(getCurrentPosition(), goal.getPosition()) != 1) {
-            goal = goal.getParent();
-            moves++;
+        int hops = tree.getHops(goal.getIndex());
+        if (hops == ShortestPathTree.UNREACHABLE) {
+            return hops;
         }
+        return Math.max(0, hops - 1);
+    }
 
-        return moves;
+    /**
+     * Write the shortest path to the goal into a buffer without allocating.
+     *
+     * @param goal Goal vertex.
+     * @param tiles Receives the tile indices of the path, from my first move
+     * to the goal. If it is too short, only the first moves are written.
+     * @return Number of moves on the path, 0 if the goal is my own vertex or
+     * cannot be reached.
+     */
+    public int getPath(Vertex goal, int[] tiles) {
+        search();
+        return tree.getPath(goal.getIndex(), tiles);
     }
-/**
-     * Count how many moves are required to reach goal position.
+    /**
+     * Count how many moves are required to reach goal position, like
+     * movesToReach(Vertex): the last move onto the goal is not counted.
      *
-     * @param goal Goal vertex
-     * @return Amount of moves to reach goal. 
+     * @param goal Goal position.
+     * @return Amount of moves to stand next to the goal, or
+     * ShortestPathTree.UNREACHABLE.
      */
     public int movesToReach(Position goal) {
         return movesToReach(positionToVertex(goal));
     }
 
+    /**
+     * Returns the distance to a vertex when enemy heroes are taken into
+     * account.
+     *
+     * @param v Any vertex.
+     * @return Sum of movement costs on the shortest path to the vertex, or
+     * ShortestPathTree.UNREACHABLE.
+     */
+    public int getDistance(Vertex v) {
+        search();
+        return tree.getDistance(v.getIndex());
+    }
+
+    /**
+     * Returns the vertex before this one on the shortest path to it when
+     * enemy heroes are taken into account.
+     *
+     * @param v Any vertex.
+     * @return Previous vertex on the path, or null for my own vertex and
+     * vertices that cannot be reached.
+     */
+    public Vertex getParent(Vertex v) {
+        search();
+        int parent = tree.getParent(v.getIndex());
+        return parent < 0 ? null : gameState.getVertex(parent);
+    }
+
     /**
      * Returns the position I'm standing in.
      *
@@ -297,7 +401,7 @@ public class Pathfinder {
      * @return
      */
     public Vertex getCurrentVertex() {
-        return gameState.getBoardGraph().get(me.getPos());
+        return gameState.getVertex(graph.tileIndex(me.getPos()));
     }
 
     /**
@@ -306,16 +410,15 @@ public class Pathfinder {
      * @return Vertex in which the closest pub is located.
      */
     public Vertex getClosestPub() {
+        search();
         Vertex closest = null;
-        int minDist = Integer.MAX_VALUE;
         for (Vertex v : pubs) {
-            if (v.getDistance() < minDist) {
+            if (isCloser(v, closest)) {
                 closest = v;
-                minDist = v.getDistance();
             }
         }
         if (closest != null) {
-            logger.info("Closest pub at " + closest + ", distance " + closest.getDistance());
+            logger.info("Closest pub at {}, distance {}", closest, Unbox.box(getDistance(closest)));
         } else {
             logger.info("Closest pub not found.");
         }
@@ -328,23 +431,42 @@ public class Pathfinder {
      * @return Closest mine.
      */
     public Vertex getClosestMine() {
+        search();
         Vertex closest = null;
-        int minDist = Integer.MAX_VALUE;
         for (Vertex v : mines) {
             if (!isMyMine(v)) {
-                if (v.getDistance() < minDist) {
+                if (isCloser(v, closest)) {
                     closest = v;
-                    minDist = v.getDistance();
                 }
             }
         }
         return closest;
     }
 
+    /**
+     * Compare distances of two vertices. Ties go to the smaller tile index.
+     *
+     * @param v A reachable vertex.
+     * @param closest Closest vertex so far, or null.
+     * @return True if v is closer than closest.
+     */
+    private boolean isCloser(Vertex v, Vertex closest) {
+        if (closest == null) {
+            return true;
+        }
+        int distance = tree.getDistance(v.getIndex());
+        int closestDistance = tree.getDistance(closest.getIndex());
+        return distance < closestDistance || (distance == closestDistance && v.getIndex() < closest.getIndex());
+    }
+
     public AdvancedGameState getGameState() {
         return gameState;
     }
 
+    public BotParameters getParameters() {
+        return parameters;
+    }
+
     /**
      * Determine if I'm standing next to an enemy mine.
      *
@@ -360,7 +482,7 @@ public class Pathfinder {
      * @return A move towards the closest pub.
      */
     public BotMove goToClosestPub() {
-        logger.info("Heading to the closest pub at " + getClosestPub());
+        logger.info("Heading to the closest pub at {}", getClosestPub());
         return this.moveTowards(getClosestPub());
     }
 
@@ -371,31 +493,23 @@ public class Pathfinder {
      */
     public BotMove goToClosestMine() {
         Vertex closestMine = this.getClosestMine();
-        logger.info("Heading to closest mine at " + closestMine);
+        logger.info("Heading to closest mine at {}", closestMine);
         return this.moveTowards(closestMine);
     }
 
     /**
-     * Returns a set of all vertices an enemy can deal damage to in the next
-     * turn.
+     * Returns where enemies are and where they can deal damage next turn.
+     * Computed the first time it is needed.
      *
-     * @param enemy Enemy whose threatened vertices are returned.
-     * @return Vertices in which the enemy can deal damage to.
-     */
-    public Set threatenedVertices(Hero enemy) {
-        Set<Vertex> threatened = new HashSet<>();
-        Vertex enemyPos = this.gameState.getBoardGraph().get(enemy.getPos());
-        threatened.add(enemyPos);
-
-        for (Vertex v : enemyPos.getAdjacentVertices()) {
-            threatened.add(v);
-            for (Vertex adj : v.getAdjacentVertices()) {
-                threatened.add(adj);
-            }
+     * @return Threats of this turn.
+     */
+    public ThreatMap getThreatMap() {
+        if (threatMap == null) {
+            threatMap = new ThreatMap(gameState);
         }
-
-        return threatened;
+        return threatMap;
     }
+
     /**
      * Get closest enemy hero. The distance is measured by how many moves it takes to reach target. 
      * @return Closest enemy hero. 
@@ -405,7 +519,7 @@ public class Pathfinder {
         int minDist = Integer.MAX_VALUE;
         for (Hero h : gameState.getHeroesById().values()) {
             if (h.getId() != gameState.getMe().getId()) {
-                Vertex v = gameState.getBoardGraph().get(h.getPos());
+                Vertex v = positionToVertex(h.getPos());
                 if (movesToReach(v) < minDist) {
                     minDist = movesToReach(v);
                     closest = h;
@@ -422,10 +536,12 @@ public class Pathfinder {
      * @return True is hero is standing next to a pub.
      */
     public boolean standsAdjacentToInn(Hero h) {
-        Position heroPos = h.getPos();
-        for (Vertex pub : this.pubs) {
-            if (calcDistance(pub.getPosition(), heroPos) == 1) {
-                logger.info("Hero " + h.getName() + " is standing next to an inn at " + pub);
+        int heroPos = graph.tileIndex(h.getPos());
+        int end = graph.firstNeighbour(heroPos + 1);
+        for (int k = graph.firstNeighbour(heroPos); k < end; k++) {
+            int tile = graph.neighbour(k);
+            if (graph.getTileType(tile) == TileGraph.PUB) {
+                logger.info("Hero {} is standing next to an inn at {}", h.getName(), gameState.getVertex(tile));
                 return true;
             }
         }
@@ -434,13 +550,25 @@ public class Pathfinder {
     }
 
     /**
-     * Reset the distance and cost of all vertices.
+     * Count how many moves it takes to walk between two positions when heroes
+     * are ignored. This is a table lookup and does not search.
+     *
+     * @param from Start position.
+     * @param to Goal position.
+     * @return Amount of moves, or TerrainDistances.UNREACHABLE.
      */
-    private void resetVertices() {
-        for (Vertex v : gameState.getBoardGraph().values()) {
-            v.setDistance(0);
-            v.setCost(1);
+    public int terrainDistance(Position from, Position to) {
+        if (!graph.contains(from) || !graph.contains(to)) {
+            return TerrainDistances.UNREACHABLE;
         }
+        return gameState.getTerrainDistances().distance(graph.tileIndex(from), graph.tileIndex(to));
+    }
+
+    /**
+     * Reset the cost of all vertices.
+     */
+    private void resetVertices() {
+        Arrays.fill(costs, 1);
     }
 
     /**
@@ -450,20 +578,7 @@ public class Pathfinder {
      * @return Vertex with the given position.
      */
     public Vertex positionToVertex(Position p) {
-        return this.gameState.getBoardGraph().get(p);
-    }
-
-    /**
-     * Set the movement cost of vertices that contain a mine or a pub to 1.
-     */
-    private void resetInnAndMineCost() {
-        for (Vertex v : mines) {
-            v.setCost(1);
-        }
-
-        for (Vertex v : pubs) {
-            v.setCost(1);
-        }
+        return this.gameState.getVertex(p);
     }
 
 }
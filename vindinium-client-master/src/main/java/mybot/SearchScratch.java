@@ -0,0 +1,89 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+
+/**
+ * Arrays a pathfinder searches in: the shortest path tree. The board itself
+ * is never written to, so pathfinders with their own scratch can search the
+ * same board at the same time.
+ * <p>
+ * Scratch is not thread safe. forCurrentThread() gives every thread its own,
+ * reused from turn to turn, so the shortest path tree is kept instead of
+ * rebuilt when the same thread plays a turn with the same source and costs
+ * again. Pathfinders of one thread take turns with it and search again if
+ * another one used it in between.
+ * <p>
+ * The scratch also remembers which state and parameters the movement costs of
+ * the tree came from. A pathfinder of a later turn in which no enemy moved has
+ * the same costs, and keeps the tree without calculating them.
+ */
+public class SearchScratch {
+
+    private static final ThreadLocal<SearchScratch> scratchByThread = new ThreadLocal<SearchScratch>() {
+        @Override
+        protected SearchScratch initialValue() {
+            return new SearchScratch();
+        }
+    };
+
+    private final ShortestPathTree tree = new ShortestPathTree();
+    /**
+     * State and parameters the movement costs of the tree came from, or null.
+     */
+    private AdvancedGameState costsState;
+    private BotParameters costsParameters;
+    /**
+     * Times a pathfinder asked for the tree of its turn.
+     */
+    private int treeUses;
+
+    /**
+     * @return Scratch of the calling thread.
+     */
+    public static SearchScratch forCurrentThread() {
+        return scratchByThread.get();
+    }
+
+    public ShortestPathTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Record that the tree was just updated with the movement costs of a
+     * state.
+     */
+    void treeUpdated(AdvancedGameState gameState, BotParameters parameters) {
+        costsState = gameState;
+        costsParameters = parameters;
+    }
+
+    /**
+     * Record that a pathfinder is about to use the tree for its turn, kept or
+     * updated.
+     */
+    void treeUsed() {
+        treeUses++;
+    }
+
+    /**
+     * @return Times a pathfinder asked for the tree of its turn.
+     */
+    int getTreeUses() {
+        return treeUses;
+    }
+
+    /**
+     * Check if the tree already is the one of a state, without calculating
+     * the movement costs: it has the source, and no hero but me moved since
+     * the state its costs came from.
+     *
+     * @param gameState Current game state.
+     * @param parameters Parameters the costs are calculated with.
+     * @param source Tile index of my position.
+     * @return True if the tree can be used as it is.
+     */
+    boolean hasTreeOf(AdvancedGameState gameState, BotParameters parameters, int source) {
+        return costsState != null && tree.getSource() == source && parameters.equals(costsParameters)
+                && gameState.othersStayedSince(costsState, gameState.getMe().getId());
+    }
+}
@@ -0,0 +1,206 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.advanced.TileGraph;
+import java.util.Arrays;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+/**
+ * Shortest paths from the hero to every tile, kept from one turn to the next.
+ * <p>
+ * The tree is rooted at the hero, so every move changes the distance of
+ * almost every tile and repairing the tree of the previous turn costs about
+ * as much as a new search. The tree is computed from scratch with Dijkstra's
+ * algorithm whenever the source or any movement cost changed, and kept as it
+ * is when neither did, which is when TreeSpeculator guessed the next turn
+ * right.
+ * <p>
+ * Among the neighbours that give the shortest distance, the parent of a tile
+ * is the one with the smallest tile index. The number of moves and the first
+ * step to every tile are recorded while the search settles it.
+ */
+public class ShortestPathTree {
+
+    /**
+     * Distance to tiles that cannot be reached.
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final Logger logger = LogManager.getLogger(ShortestPathTree.class);
+
+    private TileGraph graph;
+    private int source = -1;
+    /**
+     * Movement costs the tree was computed with.
+     */
+    private int[] costs;
+    private int[] distances;
+    private int[] parents;
+    /**
+     * Number of moves on the path to each tile.
+     */
+    private int[] hops;
+    /**
+     * First tile on the path to each tile.
+     */
+    private int[] firstSteps;
+    /**
+     * Queue of the search, kept for the next rebuild on the same board.
+     */
+    private IndexedMinHeap queue;
+    /**
+     * Changes every time the tree is rebuilt.
+     */
+    private int version;
+
+    /**
+     * Make the tree match the given source and costs, rebuilding it unless
+     * it already does.
+     *
+     * @param graph Board of the game.
+     * @param source Tile index of the hero.
+     * @param newCosts Movement cost of entering each tile.
+     * @return True if the tree was rebuilt.
+     */
+    public boolean update(TileGraph graph, int source, int[] newCosts) {
+        if (graph == this.graph && source == this.source && Arrays.equals(newCosts, costs)) {
+            return false;
+        }
+        rebuild(graph, source, newCosts);
+        return true;
+    }
+
+    /**
+     * Compute the tree from scratch with Dijkstra's algorithm.
+     *
+     * @param graph Board of the game.
+     * @param source Tile index of the hero.
+     * @param newCosts Movement cost of entering each tile.
+     */
+    public void rebuild(TileGraph graph, int source, int[] newCosts) {
+        version++;
+        int tileCount = graph.getTileCount();
+        if (graph != this.graph) {
+            this.graph = graph;
+            this.costs = new int[tileCount];
+            this.distances = new int[tileCount];
+            this.parents = new int[tileCount];
+            this.hops = new int[tileCount];
+            this.firstSteps = new int[tileCount];
+            this.queue = new IndexedMinHeap(tileCount);
+        }
+        this.source = source;
+
+        for (int tile = 0; tile < tileCount; tile++) {
+            costs[tile] = newCosts[tile];
+            distances[tile] = UNREACHABLE;
+            parents[tile] = -1;
+            hops[tile] = UNREACHABLE;
+            firstSteps[tile] = -1;
+        }
+
+        IndexedMinHeap q = queue;
+        q.clear();
+
+        distances[source] = 0;
+        hops[source] = 0;
+        q.insert(source, 0);
+
+        while (!q.isEmpty()) {
+            int u = q.poll();
+            if (!graph.isPassable(u)) {
+                // Mines and pubs can be reached, but not passed through
+                continue;
+            }
+            int end = graph.firstNeighbour(u + 1);
+            for (int k = graph.firstNeighbour(u); k < end; k++) {
+                int v = graph.neighbour(k);
+                int alt = distances[u] + costs[v];
+                if (alt < distances[v]) {
+                    if (distances[v] == UNREACHABLE) {
+                        q.insert(v, alt);
+                    } else {
+                        q.decreaseKey(v, alt);
+                    }
+                    distances[v] = alt;
+                    parents[v] = u;
+                    // u is settled, so its path will not change any more
+                    hops[v] = hops[u] + 1;
+                    firstSteps[v] = u == source ? v : firstSteps[u];
+                }
+            }
+        }
+        logger.info("Rebuilt shortest paths from {}", Unbox.box(source));
+    }
+
+    /**
+     * @param tile Tile index.
+     * @return Distance from the source to the tile, or UNREACHABLE.
+     */
+    public int getDistance(int tile) {
+        return distances[tile];
+    }
+
+    /**
+     * @param tile Tile index.
+     * @return The tile before this one on the shortest path, or -1 for the
+     * source and unreachable tiles.
+     */
+    public int getParent(int tile) {
+        return parents[tile];
+    }
+
+    /**
+     * @param tile Tile index.
+     * @return Number of moves on the shortest path to the tile, or
+     * UNREACHABLE.
+     */
+    public int getHops(int tile) {
+        return hops[tile];
+    }
+
+    /**
+     * @param tile Tile index.
+     * @return Tile index of the first move on the shortest path to the tile,
+     * or -1 for the source and unreachable tiles.
+     */
+    public int getFirstStep(int tile) {
+        return firstSteps[tile];
+    }
+
+    /**
+     * Write the shortest path to a tile into a buffer, from the first step to
+     * the tile itself.
+     *
+     * @param tile Tile index of the goal.
+     * @param buffer Receives the tile indices of the path. If it is too short,
+     * only the first moves are written.
+     * @return Number of moves on the path, 0 for the source and unreachable
+     * tiles.
+     */
+    public int getPath(int tile, int[] buffer) {
+        if (distances[tile] == UNREACHABLE) {
+            return 0;
+        }
+        int length = hops[tile];
+        for (int i = length - 1; i >= 0; i--) {
+            if (i < buffer.length) {
+                buffer[i] = tile;
+            }
+            tile = parents[tile];
+        }
+        return length;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * @return A number that changes every time the tree is rebuilt.
+     */
+    public int getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,123 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.bot.advanced.TileGraph;
+import com.brianstempin.vindiniumclient.dto.GameState.Hero;
+import java.util.Arrays;
+
+/**
+ * Where enemy heroes are and where they can deal damage next turn, computed
+ * once per turn. Tile sets are bitsets over tile indices, one bit per tile in
+ * a long[], so questions about a tile are answered without hashing or
+ * allocating.
+ */
+public class ThreatMap {
+
+    private final TileGraph graph;
+    /**
+     * Tiles with an enemy on them.
+     */
+    private final long[] enemyTiles;
+    /**
+     * Number of enemies that can deal damage to each tile.
+     */
+    private final byte[] threatCounts;
+    /**
+     * Number of neighbouring tiles with an enemy on them.
+     */
+    private final byte[] adjacentEnemyCounts;
+    /**
+     * Tiles the enemy being added can deal damage to, cleared for each enemy.
+     */
+    private final long[] threatened;
+
+    /**
+     * @param gameState Current game state. Every hero except me is an enemy.
+     */
+    public ThreatMap(AdvancedGameState gameState) {
+        this.graph = gameState.getTileGraph();
+        int tileCount = graph.getTileCount();
+        int words = (tileCount + 63) >>> 6;
+        int myId = gameState.getMe().getId();
+
+        this.enemyTiles = new long[words];
+        this.threatCounts = new byte[tileCount];
+        this.adjacentEnemyCounts = new byte[tileCount];
+        this.threatened = new long[words];
+
+        for (Hero h : gameState.getHeroesById().values()) {
+            if (h.getId() == myId) {
+                continue;
+            }
+            int tile = graph.tileIndex(h.getPos());
+            set(enemyTiles, tile);
+            findThreatenedTiles(tile);
+            for (int w = 0; w < words; w++) {
+                for (long bits = threatened[w]; bits != 0; bits &= bits - 1) {
+                    threatCounts[(w << 6) + Long.numberOfTrailingZeros(bits)]++;
+                }
+            }
+        }
+
+        for (int tile = 0; tile < tileCount; tile++) {
+            if (contains(enemyTiles, tile)) {
+                int end = graph.firstNeighbour(tile + 1);
+                for (int k = graph.firstNeighbour(tile); k < end; k++) {
+                    adjacentEnemyCounts[graph.neighbour(k)]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Put the tiles an enemy can deal damage to next turn in threatened: the
+     * enemy's tile, its neighbours and the neighbours of those it can move to.
+     */
+    private void findThreatenedTiles(int enemyTile) {
+        Arrays.fill(threatened, 0);
+        set(threatened, enemyTile);
+        int end = graph.firstNeighbour(enemyTile + 1);
+        for (int k = graph.firstNeighbour(enemyTile); k < end; k++) {
+            int v = graph.neighbour(k);
+            set(threatened, v);
+            if (graph.isPassable(v)) {
+                int adjEnd = graph.firstNeighbour(v + 1);
+                for (int j = graph.firstNeighbour(v); j < adjEnd; j++) {
+                    set(threatened, graph.neighbour(j));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param tile Tile index.
+     * @return True if an enemy stands on the tile.
+     */
+    public boolean isEnemyAt(int tile) {
+        return contains(enemyTiles, tile);
+    }
+
+    /**
+     * @param tile Tile index.
+     * @return Number of neighbouring tiles with an enemy on them.
+     */
+    public int countAdjacentEnemies(int tile) {
+        return adjacentEnemyCounts[tile];
+    }
+
+    /**
+     * @param tile Tile index.
+     * @return Number of enemies that can deal damage to the tile next turn.
+     */
+    public int countThreats(int tile) {
+        return threatCounts[tile];
+    }
+
+    private static void set(long[] bits, int tile) {
+        bits[tile >>> 6] |= 1L << tile;
+    }
+
+    private static boolean contains(long[] bits, int tile) {
+        return (bits[tile >>> 6] & (1L << tile)) != 0;
+    }
+}
@@ -0,0 +1,183 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.advanced.TileGraph;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The tiles around every tile that an enemy standing there makes more
+ * expensive to walk through, grouped by threat depth.
+ * <p>
+ * The depth of a tile is the number of moves from the enemy to it. The tiles
+ * and depths only depend on the terrain, so they are found once per board
+ * instead of with a search around every enemy every turn.
+ * <p>
+ * The tiles of all stencils are packed in one array. Tiles at depth d of the
+ * stencil of tile t are tile(i) for i from start(t, d) to end(t, d) - 1.
+ * Instances never change after construction and are shared by every thread.
+ */
+public class ThreatStencils {
+
+    /**
+     * Stencils by board. Boards are only kept while a game uses them.
+     */
+    private static final Map<TileGraph, Holder> holdersByGraph = new WeakHashMap<>();
+
+    private final int radius;
+    /**
+     * Where each depth of each stencil starts in tiles, radius + 2 entries
+     * per tile.
+     */
+    private final int[] depthStarts;
+    private final int[] tiles;
+
+    /**
+     * Find the stencils of every tile of a board.
+     *
+     * @param graph Board of the game.
+     * @param radius Deepest threat depth.
+     */
+    public ThreatStencils(TileGraph graph, int radius) {
+        int tileCount = graph.getTileCount();
+        this.radius = radius;
+        this.depthStarts = new int[tileCount * (radius + 2)];
+
+        int[] queue = new int[tileCount];
+        int[] depths = new int[tileCount];
+        boolean[] visited = new boolean[tileCount];
+        int[] packed = new int[tileCount];
+        int size = 0;
+
+        for (int tile = 0; tile < tileCount; tile++) {
+            int offset = tile * (radius + 2);
+            int count = 0;
+            if (graph.getTileType(tile) != TileGraph.WALL) {
+                count = search(graph, tile, queue, depths, visited);
+                if (size + count > packed.length) {
+                    packed = Arrays.copyOf(packed, Math.max(2 * packed.length, size + count));
+                }
+            }
+            int depth = 0;
+            for (int i = 0; i < count; i++) {
+                while (depth <= depths[i]) {
+                    depthStarts[offset + depth++] = size;
+                }
+                packed[size++] = queue[i];
+            }
+            while (depth < radius + 2) {
+                depthStarts[offset + depth++] = size;
+            }
+        }
+        this.tiles = Arrays.copyOf(packed, size);
+    }
+
+    /**
+     * Breadth first search from an enemy's tile to the tiles at most radius
+     * moves away. Mines and pubs are found but not searched through.
+     *
+     * @return Number of tiles found. They are at the start of queue in the
+     * order of their depth, their depths at the start of depths.
+     */
+    private int search(TileGraph graph, int enemyPos, int[] queue, int[] depths, boolean[] visited) {
+        int head = 0;
+        int tail = 0;
+        visited[enemyPos] = true;
+        depths[tail] = 0;
+        queue[tail++] = enemyPos;
+
+        while (head < tail) {
+            int current = queue[head];
+            int depth = depths[head++];
+            if (depth == radius || !graph.isPassable(current)) {
+                continue;
+            }
+            int end = graph.firstNeighbour(current + 1);
+            for (int k = graph.firstNeighbour(current); k < end; k++) {
+                int adj = graph.neighbour(k);
+                if (!visited[adj]) {
+                    visited[adj] = true;
+                    depths[tail] = depth + 1;
+                    queue[tail++] = adj;
+                }
+            }
+        }
+        for (int i = 0; i < tail; i++) {
+            visited[queue[i]] = false;
+        }
+        return tail;
+    }
+
+    /**
+     * Returns the stencils of a board, finding them the first time the board
+     * is seen. The depths a search finds do not depend on where it stops, so
+     * stencils of a larger radius also serve smaller ones.
+     * <p>
+     * The map of boards is locked only to find the holder of the board.
+     * Stencils are found under the lock of the holder, so games on other
+     * boards do not wait for them.
+     *
+     * @param graph Board of the game.
+     * @param radius Deepest threat depth.
+     * @return Stencils of the board.
+     */
+    public static ThreatStencils forGraph(TileGraph graph, int radius) {
+        Holder holder;
+        synchronized (holdersByGraph) {
+            holder = holdersByGraph.get(graph);
+            if (holder == null) {
+                holder = new Holder();
+                holdersByGraph.put(graph, holder);
+            }
+        }
+        ThreatStencils stencils = holder.stencils;
+        if (stencils == null || stencils.radius < radius) {
+            synchronized (holder) {
+                stencils = holder.stencils;
+                if (stencils == null || stencils.radius < radius) {
+                    stencils = new ThreatStencils(graph, radius);
+                    holder.stencils = stencils;
+                }
+            }
+        }
+        return stencils;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @param tile Tile index of the enemy.
+     * @param depth Threat depth, 0 to radius.
+     * @return Index of the first tile at this depth.
+     */
+    public int start(int tile, int depth) {
+        return depthStarts[tile * (radius + 2) + depth];
+    }
+
+    /**
+     * @param tile Tile index of the enemy.
+     * @param depth Threat depth, 0 to radius.
+     * @return Index after the last tile at this depth.
+     */
+    public int end(int tile, int depth) {
+        return depthStarts[tile * (radius + 2) + depth + 1];
+    }
+
+    /**
+     * @param i Index from start and end.
+     * @return Tile index of a threatened tile.
+     */
+    public int tile(int i) {
+        return tiles[i];
+    }
+
+    /**
+     * The stencils of one board, found once.
+     */
+    private static final class Holder {
+
+        private volatile ThreatStencils stencils;
+    }
+}
@@ -0,0 +1,236 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.bot.advanced.TileGraph;
+import com.brianstempin.vindiniumclient.dto.Positions;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+/**
+ * Builds the shortest path tree of the next turn while the move is on its
+ * way to the server.
+ * <p>
+ * The guess is that my move succeeds unless a wall, a mine, a pub or a hero
+ * is in the way, and that the other heroes stay where they are. A background
+ * thread updates the tree of a scratch owned by the speculator for the
+ * guessed position, with the movement costs of the current state. The next
+ * turn searches in the same scratch: if the guess was right and the costs did
+ * not change, the tree is already correct, otherwise it is rebuilt as usual.
+ * The tree is the same in every case, only the time spent on it differs.
+ * <p>
+ * Not thread safe, each bot has its own.
+ */
+public class TreeSpeculator {
+
+    private static final Logger logger = LogManager.getLogger(TreeSpeculator.class);
+
+    private final BotParameters parameters;
+    private SearchScratch scratch = new SearchScratch();
+    private ExecutorService executor;
+    /**
+     * Nanoseconds the running speculation took, null if there is none.
+     */
+    private Future<Long> pending;
+    private AdvancedGameState guessedFrom;
+    private int guessedTile;
+
+    private int speculations;
+    private int hits;
+    private int exactHits;
+    private int keptHits;
+    private long savedNanos;
+    /**
+     * Nanoseconds the speculation of the last hit took, -1 once it is known
+     * whether the turn kept its tree.
+     */
+    private long hitNanos = -1;
+    private int hitTreeVersion;
+    private int hitTreeUses;
+
+    public TreeSpeculator() {
+        this(BotParameters.DEFAULTS);
+    }
+
+    /**
+     * @param parameters Parameters of the bot, they decide the movement costs.
+     */
+    public TreeSpeculator(BotParameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Start updating the tree for the position the move is expected to lead
+     * to. Waits for the previous speculation if it is still running.
+     *
+     * @param gameState State the move was decided on.
+     * @param move The move about to be sent.
+     */
+    public void speculate(final AdvancedGameState gameState, BotMove move) {
+        claim(null);
+        settleHit();
+        TileGraph graph = gameState.getTileGraph();
+        int from = graph.tileIndex(gameState.getMe().getPos());
+        int to = graph.step(from, move);
+        if (to != from && gameState.getHeroesByPosition().containsKey(Positions.forSize(graph.getSize()).get(to))) {
+            to = from;
+        }
+        final int tile = to;
+        final SearchScratch target = scratch;
+        guessedFrom = gameState;
+        guessedTile = tile;
+        speculations++;
+        pending = getExecutor().submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                long start = System.nanoTime();
+                new Pathfinder(gameState, target, parameters).prepareTree(tile);
+                return System.nanoTime() - start;
+            }
+        });
+    }
+
+    /**
+     * Wait for the running speculation and check it against the real state.
+     *
+     * @param gameState The state of this turn, or null to only wait.
+     * @return Scratch for the pathfinder of this turn.
+     */
+    public SearchScratch claim(AdvancedGameState gameState) {
+        if (pending == null) {
+            return scratch;
+        }
+        long spent;
+        try {
+            spent = pending.get();
+        } catch (InterruptedException e) {
+            // The speculation may still be writing to the scratch
+            Thread.currentThread().interrupt();
+            return abandon("Interrupted while waiting for speculation");
+        } catch (ExecutionException e) {
+            logger.warn("Speculation failed", e.getCause());
+            return abandon("Speculation failed");
+        }
+        pending = null;
+        if (gameState == null) {
+            return scratch;
+        }
+
+        TileGraph graph = gameState.getTileGraph();
+        if (graph == guessedFrom.getTileGraph() && graph.tileIndex(gameState.getMe().getPos()) == guessedTile) {
+            hits++;
+            if (gameState.othersStayedSince(guessedFrom, gameState.getMe().getId())) {
+                exactHits++;
+            }
+            hitNanos = spent;
+            hitTreeVersion = scratch.getTree().getVersion();
+            hitTreeUses = scratch.getTreeUses();
+            logger.info("Speculation hit");
+        } else {
+            logger.info("Speculation missed");
+        }
+        return scratch;
+    }
+
+    /**
+     * Count the time of the last hit as saved if the turn used the tree and
+     * did not rebuild it. Called once the move of the turn is decided.
+     */
+    private void settleHit() {
+        if (hitNanos < 0) {
+            return;
+        }
+        ShortestPathTree tree = scratch.getTree();
+        if (scratch.getTreeUses() > hitTreeUses && tree.getVersion() == hitTreeVersion) {
+            keptHits++;
+            savedNanos += hitNanos;
+            logger.info("Speculated tree kept, {}ns of searching done ahead", Unbox.box(hitNanos));
+        }
+        hitNanos = -1;
+    }
+
+    private SearchScratch abandon(String reason) {
+        logger.warn("{}, starting over with new scratch", reason);
+        pending = null;
+        hitNanos = -1;
+        scratch = new SearchScratch();
+        return scratch;
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "tree-speculator");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Stop the background thread and log how well the guesses went.
+     */
+    public void shutdown() {
+        claim(null);
+        settleHit();
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        if (speculations > 0) {
+            logger.info("Speculation hit {} of {} turns, {} with no other hero moving, {} kept the tree, "
+                    + "{}us of searching done ahead", hits, speculations, exactHits, keptHits,
+                    TimeUnit.NANOSECONDS.toMicros(savedNanos));
+        }
+    }
+
+    /**
+     * @return Number of speculations started.
+     */
+    public int getSpeculations() {
+        return speculations;
+    }
+
+    /**
+     * @return Turns on which I ended up where the speculation guessed.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Hits on which no other hero moved either, so the tree was
+     * ready.
+     */
+    public int getExactHits() {
+        return exactHits;
+    }
+
+    /**
+     * @return Hits on which the pathfinder of the turn used the speculated
+     * tree without rebuilding it.
+     */
+    public int getKeptHits() {
+        return keptHits;
+    }
+
+    /**
+     * @return Nanoseconds the speculations of the kept hits took. Other hits
+     * rebuilt the tree on the main thread anyway and saved nothing.
+     */
+    public long getSavedNanos() {
+        return savedNanos;
+    }
+}
@@ -0,0 +1,185 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.server.TestGames;
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks GameStateReader against Gson, which read the responses before it.
+ */
+public class GameStateReaderTest {
+
+    @Test
+    public void readsFixturesLikeGson() throws IOException {
+        assertReadLikeGson(load("known-good-game-state.json"));
+        assertReadLikeGson(load("known-good-game-state-2.json"));
+    }
+
+    /**
+     * One reader for the whole game, as a runner uses it.
+     */
+    @Test
+    public void readsGeneratedGamesLikeGson() throws IOException {
+        for (int size : new int[]{10, 18, 28}) {
+            GameStateReader reader = new GameStateReader();
+            for (GameState state : TestGames.randomGame(size, size, 50)) {
+                assertReadLikeGson(reader, new Gson().toJson(state).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void keepsStringsOfThePreviousResponse() throws IOException {
+        byte[] json = load("known-good-game-state.json");
+        GameStateReader reader = new GameStateReader();
+        reader.read(new ByteArrayInputStream(json));
+        String name = reader.getHeroes().get(0).getName();
+        String viewUrl = reader.getViewUrl();
+        reader.read(new ByteArrayInputStream(json));
+        assertSame(name, reader.getHeroes().get(0).getName());
+        assertSame(viewUrl, reader.getViewUrl());
+    }
+
+    @Test
+    public void skipsUnknownKeys() throws IOException {
+        String json = "{\"extra\": {\"a\": [1, -2.5e3, true, null, \"x\\\"y\", {}]},"
+                + " \"game\": {\"id\": \"g\", \"rules\": [[], {\"b\": false}], \"turn\": 4,"
+                + " \"heroes\": [{\"id\": 1, \"skin\": \"\\u00e9\", \"pos\": {\"x\": 1, \"y\": 0, \"z\": 9}}],"
+                + " \"board\": {\"size\": 2, \"theme\": null, \"tiles\": \"##@1$-[]\"}},"
+                + " \"hero\": {\"id\": 1, \"pos\": {\"x\": 1, \"y\": 0}}, \"token\": \"t\"}";
+        assertReadLikeGson(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readsEscapes() throws IOException {
+        String json = "{\"game\": {\"heroes\": [{\"id\": 1,"
+                + " \"name\": \"a\\\"b\\\\c\\/d\\n\\t\\u00e9\\u20AC\", \"userId\": \"\u00e9t\u00e9\"}],"
+                + " \"board\": {\"size\": 1, \"tiles\": \"\\u0023\\u0023\"}},"
+                + " \"hero\": null, \"viewUrl\": \"http:\\/\\/localhost\\/x\"}";
+        GameStateReader reader = assertReadLikeGson(json.getBytes(StandardCharsets.UTF_8));
+        assertEquals("a\"b\\c/d\n\t\u00e9\u20ac", reader.getHeroes().get(0).getName());
+        assertEquals("\u00e9t\u00e9", reader.getHeroes().get(0).getUserId());
+        assertEquals("##", reader.getTiles().toString());
+        assertEquals("http://localhost/x", reader.getViewUrl());
+        assertNull(reader.getMe());
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+        String[] malformed = {
+                "",
+                "[]",
+                "{\"game\": {\"board\": {\"size\": 2, \"tiles\": \"##\"}}}",
+                "{\"game\": {\"board\": {\"size\": 1, \"tiles\": \"##\"}}",
+                "{\"game\": {\"board\": {\"size\": 1, \"tiles\": \"##}}}",
+                "{\"game\": {\"board\": {\"size\": 1, \"tiles\": \"##\"}}} {}",
+                "{\"game\": {\"turn\": x, \"board\": {\"size\": 1, \"tiles\": \"##\"}}}",
+                "{\"game\": {\"finished\": 1, \"board\": {\"size\": 1, \"tiles\": \"##\"}}}",
+                "{\"game\": {\"id\": \"\\u12\", \"board\": {\"size\": 1, \"tiles\": \"##\"}}}",
+                "{\"game\": {\"board\": {\"size\": 1 \"tiles\": \"##\"}}}",
+        };
+        for (String json : malformed) {
+            assertRejected(json);
+        }
+    }
+
+    @Test
+    public void rejectsNullHero() {
+        assertRejected("{\"game\": {\"heroes\": [{\"id\": 1}, null],"
+                + " \"board\": {\"size\": 1, \"tiles\": \"##\"}}}");
+    }
+
+    private static void assertRejected(String json) {
+        GameStateReader reader = new GameStateReader();
+        try {
+            reader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+            fail("Read " + json);
+        } catch (IOException expected) {
+            assertNull(json, reader.getHeroes());
+            assertNull(json, reader.getGameState());
+        }
+    }
+
+    private static GameStateReader assertReadLikeGson(byte[] json) throws IOException {
+        GameStateReader reader = new GameStateReader();
+        assertReadLikeGson(reader, json);
+        return reader;
+    }
+
+    private static void assertReadLikeGson(GameStateReader reader, byte[] json) throws IOException {
+        GameState expected = new Gson().fromJson(new String(json, StandardCharsets.UTF_8), GameState.class);
+        reader.read(new ByteArrayInputStream(json));
+
+        GameState.Game game = expected.getGame();
+        assertEquals(game.getId(), reader.getGameId());
+        assertEquals(game.getTurn(), reader.getTurn());
+        assertEquals(game.getMaxTurns(), reader.getMaxTurns());
+        assertEquals(game.isFinished(), reader.isFinished());
+        assertEquals(game.getBoard().getSize(), reader.getBoardSize());
+        assertEquals(game.getBoard().getTiles(), reader.getTiles().toString());
+        assertEquals(expected.getToken(), reader.getToken());
+        assertEquals(expected.getViewUrl(), reader.getViewUrl());
+        assertEquals(expected.getPlayUrl(), reader.getPlayUrl());
+        List<GameState.Hero> heroes = game.getHeroes() == null ? Collections.<GameState.Hero>emptyList()
+                : game.getHeroes();
+        assertEquals(heroes.size(), reader.getHeroes().size());
+        for (int i = 0; i < heroes.size(); i++) {
+            assertSameHero("Hero " + i, heroes.get(i), reader.getHeroes().get(i));
+        }
+        if (expected.getHero() == null) {
+            assertNull(reader.getMe());
+        } else {
+            assertSameHero("Me", expected.getHero(), reader.getMe());
+        }
+
+        GameState built = reader.getGameState();
+        assertEquals(game.getBoard().getTiles(), built.getGame().getBoard().getTiles());
+        assertSame(reader.getHeroes(), built.getGame().getHeroes());
+        assertSame(reader.getMe(), built.getHero());
+    }
+
+    private static void assertSameHero(String message, GameState.Hero expected, GameState.Hero actual) {
+        assertEquals(message, expected.getId(), actual.getId());
+        assertEquals(message, expected.getName(), actual.getName());
+        assertEquals(message, expected.getUserId(), actual.getUserId());
+        assertEquals(message, expected.getElo(), actual.getElo());
+        assertSamePosition(message, expected.getPos(), actual.getPos());
+        assertEquals(message, expected.getLife(), actual.getLife());
+        assertEquals(message, expected.getGold(), actual.getGold());
+        assertEquals(message, expected.getMineCount(), actual.getMineCount());
+        assertSamePosition(message, expected.getSpawnPos(), actual.getSpawnPos());
+        assertEquals(message, expected.isCrashed(), actual.isCrashed());
+    }
+
+    /**
+     * Gson leaves a missing position null where the reader reads 0, 0.
+     */
+    private static void assertSamePosition(String message, GameState.Position expected, GameState.Position actual) {
+        assertEquals(message, expected == null ? new GameState.Position(0, 0) : expected, actual);
+    }
+
+    private static byte[] load(String resource) throws IOException {
+        try (InputStream in = GameStateReaderTest.class.getClassLoader().getResourceAsStream(resource)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            int n;
+            while ((n = in.read(chunk)) >= 0) {
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}
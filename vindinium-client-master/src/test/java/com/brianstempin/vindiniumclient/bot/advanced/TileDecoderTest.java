@@ -0,0 +1,93 @@
+package com.brianstempin.vindiniumclient.bot.advanced;
+
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.server.TestGames;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks TileDecoder against the substring decoding AdvancedGameState did
+ * before it.
+ */
+public class TileDecoderTest {
+
+    @Test
+    public void decodesFixturesLikeSubstrings() throws IOException {
+        assertSameAsSubstrings(load("known-good-game-state.json").getGame().getBoard());
+        assertSameAsSubstrings(load("known-good-game-state-2.json").getGame().getBoard());
+    }
+
+    /**
+     * Every turn of a game, so mines of every owner and heroes on every kind
+     * of tile come up.
+     */
+    @Test
+    public void decodesGeneratedBoardsLikeSubstrings() {
+        for (int size : new int[]{10, 18, 28}) {
+            for (GameState state : TestGames.randomGame(size, size, 100)) {
+                assertSameAsSubstrings(state.getGame().getBoard());
+            }
+        }
+    }
+
+    @Test
+    public void decodesAnyCharSequence() {
+        String tiles = "##[]$-$4@1  ";
+        byte[] types = new byte[6];
+        byte[] owners = new byte[6];
+        TileDecoder.decode(new StringBuilder(tiles), types, owners);
+        assertEquals(TileGraph.WALL, types[0]);
+        assertEquals(TileGraph.PUB, types[1]);
+        assertEquals(TileGraph.MINE, types[2]);
+        assertEquals(TileDecoder.NO_OWNER, owners[2]);
+        assertEquals(TileGraph.MINE, types[3]);
+        assertEquals(4, owners[3]);
+        assertEquals(TileGraph.AIR, types[4]);
+        assertEquals(TileDecoder.NO_OWNER, owners[4]);
+        assertEquals(TileGraph.AIR, types[5]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBadMineOwner() {
+        TileDecoder.decode("$x", new byte[1], new byte[1]);
+    }
+
+    private static void assertSameAsSubstrings(GameState.Board board) {
+        String tiles = board.getTiles();
+        int tileCount = board.getSize() * board.getSize();
+        byte[] types = new byte[tileCount];
+        byte[] owners = new byte[tileCount];
+        TileDecoder.decode(tiles, types, owners);
+
+        for (int tile = 0; tile < tileCount; tile++) {
+            String tileValue = tiles.substring(2 * tile, 2 * tile + 2);
+            byte type = TileGraph.AIR;
+            byte owner = TileDecoder.NO_OWNER;
+            if (tileValue.equals("##")) {
+                type = TileGraph.WALL;
+            } else if (tileValue.startsWith("$")) {
+                type = TileGraph.MINE;
+                if (!tileValue.substring(1).equals("-")) {
+                    owner = (byte) Integer.parseInt(tileValue.substring(1));
+                }
+            } else if (tileValue.equals("[]")) {
+                type = TileGraph.PUB;
+            }
+            assertEquals("Type of tile " + tile + " '" + tileValue + "'", type, types[tile]);
+            assertEquals("Owner of tile " + tile + " '" + tileValue + "'", owner, owners[tile]);
+        }
+    }
+
+    private static GameState load(String resource) throws IOException {
+        try (Reader reader = new InputStreamReader(TileDecoderTest.class.getClassLoader().getResourceAsStream(resource),
+                StandardCharsets.UTF_8)) {
+            return new Gson().fromJson(reader, GameState.class);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.brianstempin.vindiniumclient.server;
+
+import com.brianstempin.vindiniumclient.dto.GameState;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Games of the local server for the tests, where every hero moves at random.
+ */
+public final class TestGames {
+
+    private static final String[] DIRECTIONS = {"Stay", "North", "South", "East", "West"};
+
+    private TestGames() {
+    }
+
+    /**
+     * Play a game and keep what the client saw.
+     *
+     * @param size Width of the board.
+     * @param seed Decides the board and every move.
+     * @param turns Turns of the client.
+     * @return The states of the client, turn by turn.
+     */
+    public static List<GameState> randomGame(int size, long seed, int turns) {
+        Random random = new Random(LocalServer.mix(seed));
+        LocalGame game = new LocalGame("test" + seed, MapGenerator.generate(size, random),
+                LocalGame.HEROES * turns, random, "test");
+        List<GameState> states = new ArrayList<>();
+        game.playOthers();
+        while (!game.isFinished()) {
+            states.add(game.toGameState("test", null, null));
+            game.playClient(DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+        }
+        return states;
+    }
+}
@@ -0,0 +1,172 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.bot.advanced.TileGraph;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.server.TestGames;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Plays games of the local server turn by turn with one scratch, like a bot
+ * does, and checks the kept shortest path tree against a new search every
+ * turn.
+ */
+public class ShortestPathTreeTest {
+
+    @Test
+    public void treeMatchesNewSearchEveryTurn() {
+        for (int size : new int[]{12, 18, 28}) {
+            replay(TestGames.randomGame(size, size, 150), false);
+        }
+    }
+
+    /**
+     * Every other turn the tree is first built for a neighbouring tile, as
+     * TreeSpeculator does while the move is sent.
+     */
+    @Test
+    public void treeMatchesNewSearchAfterSpeculation() {
+        for (int size : new int[]{12, 18, 28}) {
+            replay(TestGames.randomGame(size, 100 + size, 150), true);
+        }
+    }
+
+    @Test
+    public void updateKeepsTreeOfSameSourceAndCosts() {
+        GameState state = TestGames.randomGame(18, 7, 1).get(0);
+        AdvancedGameState gameState = new AdvancedGameState(state);
+        TileGraph graph = gameState.getTileGraph();
+        int[] costs = new Pathfinder(gameState, new SearchScratch()).getCosts();
+        int source = graph.tileIndex(gameState.getMe().getPos());
+
+        ShortestPathTree tree = new ShortestPathTree();
+        assertTrue(tree.update(graph, source, costs));
+        int version = tree.getVersion();
+        assertFalse(tree.update(graph, source, costs.clone()));
+        assertEquals(version, tree.getVersion());
+
+        int[] changed = costs.clone();
+        changed[source == 0 ? 1 : 0]++;
+        assertTrue(tree.update(graph, source, changed));
+        assertEquals(version + 1, tree.getVersion());
+    }
+
+    /**
+     * A turn in which no enemy moved keeps the tree of the turn before from
+     * the state changes alone.
+     */
+    @Test
+    public void pathfinderKeepsTreeWhenNoEnemyMoved() {
+        GameState state = TestGames.randomGame(18, 11, 1).get(0);
+        AdvancedGameState first = new AdvancedGameState(state);
+        SearchScratch scratch = new SearchScratch();
+        new Pathfinder(first, scratch).getClosestMine();
+        int version = scratch.getTree().getVersion();
+
+        AdvancedGameState second = new AdvancedGameState(first, state);
+        assertTrue(second.othersStayedSince(first, second.getMe().getId()));
+        Pathfinder pathfinder = new Pathfinder(second, scratch);
+        pathfinder.getClosestMine();
+        assertEquals(version, scratch.getTree().getVersion());
+        GameState.Hero me = second.getMe();
+        TileGraph graph = second.getTileGraph();
+        assertSameAsDijkstra("Kept", graph, pathfinder.getCosts(), graph.tileIndex(me.getPos()), scratch.getTree());
+    }
+
+    private void replay(List<GameState> states, boolean speculate) {
+        SearchScratch scratch = new SearchScratch();
+        AdvancedGameState gameState = null;
+        int turn = 0;
+        for (GameState state : states) {
+            gameState = gameState == null ? new AdvancedGameState(state) : new AdvancedGameState(gameState, state);
+            TileGraph graph = gameState.getTileGraph();
+            if (speculate && turn % 2 == 1) {
+                int me = graph.tileIndex(gameState.getMe().getPos());
+                int guess = graph.degree(me) == 0 ? me : graph.neighbour(graph.firstNeighbour(me));
+                new Pathfinder(gameState, scratch).prepareTree(guess);
+            }
+            Pathfinder pathfinder = new Pathfinder(gameState, scratch);
+            pathfinder.getClosestMine();
+            int source = graph.tileIndex(gameState.getMe().getPos());
+            assertSameAsDijkstra("Turn " + turn, graph, pathfinder.getCosts(), source, scratch.getTree());
+            turn++;
+        }
+    }
+
+    /**
+     * Dijkstra's algorithm with a PriorityQueue, then parents by the rule of
+     * ShortestPathTree: the neighbour with the smallest index among those
+     * that give the shortest distance.
+     */
+    private static void assertSameAsDijkstra(String message, TileGraph graph, int[] costs, int source,
+            ShortestPathTree tree) {
+        int tileCount = graph.getTileCount();
+        int[] distances = new int[tileCount];
+        Arrays.fill(distances, ShortestPathTree.UNREACHABLE);
+        distances[source] = 0;
+        PriorityQueue<long[]> queue = new PriorityQueue<>(11, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        });
+        queue.add(new long[]{0, source});
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int u = (int) entry[1];
+            if (entry[0] != distances[u] || !graph.isPassable(u)) {
+                continue;
+            }
+            for (int k = graph.firstNeighbour(u); k < graph.firstNeighbour(u + 1); k++) {
+                int v = graph.neighbour(k);
+                if (distances[u] + costs[v] < distances[v]) {
+                    distances[v] = distances[u] + costs[v];
+                    queue.add(new long[]{distances[v], v});
+                }
+            }
+        }
+
+        int[] parents = new int[tileCount];
+        Arrays.fill(parents, -1);
+        for (int v = 0; v < tileCount; v++) {
+            if (v == source || distances[v] == ShortestPathTree.UNREACHABLE) {
+                continue;
+            }
+            for (int k = graph.firstNeighbour(v); k < graph.firstNeighbour(v + 1); k++) {
+                int u = graph.neighbour(k);
+                if (graph.isPassable(u) && distances[u] != ShortestPathTree.UNREACHABLE
+                        && distances[u] + costs[v] == distances[v] && (parents[v] < 0 || u < parents[v])) {
+                    parents[v] = u;
+                }
+            }
+        }
+
+        assertEquals(message, source, tree.getSource());
+        for (int tile = 0; tile < tileCount; tile++) {
+            String at = message + ", tile " + tile;
+            assertEquals(at, distances[tile], tree.getDistance(tile));
+            assertEquals(at, parents[tile], tree.getParent(tile));
+            if (distances[tile] == ShortestPathTree.UNREACHABLE) {
+                assertEquals(at, ShortestPathTree.UNREACHABLE, tree.getHops(tile));
+                assertEquals(at, -1, tree.getFirstStep(tile));
+                continue;
+            }
+            int hops = 0;
+            int firstStep = -1;
+            for (int t = tile; t != source; t = parents[t]) {
+                hops++;
+                firstStep = t;
+            }
+            assertEquals(at, hops, tree.getHops(tile));
+            assertEquals(at, firstStep, tree.getFirstStep(tile));
+        }
+    }
+}
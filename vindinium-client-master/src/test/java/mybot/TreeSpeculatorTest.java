@@ -0,0 +1,73 @@
+package mybot;
+
+import com.brianstempin.vindiniumclient.bot.BotMove;
+import com.brianstempin.vindiniumclient.bot.advanced.AdvancedGameState;
+import com.brianstempin.vindiniumclient.dto.GameState;
+import com.brianstempin.vindiniumclient.server.TestGames;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the speculator only counts the time of a speculation as saved
+ * when the next turn keeps the tree it built.
+ */
+public class TreeSpeculatorTest {
+
+    @Test
+    public void savesTimeWhenTurnKeepsTree() {
+        TreeSpeculator speculator = new TreeSpeculator();
+        AdvancedGameState second = speculateStay(speculator);
+        new Pathfinder(second, speculator.claim(second), BotParameters.DEFAULTS).getClosestMine();
+        speculator.shutdown();
+
+        assertEquals(1, speculator.getHits());
+        assertEquals(1, speculator.getExactHits());
+        assertEquals(1, speculator.getKeptHits());
+        assertTrue(speculator.getSavedNanos() > 0);
+    }
+
+    /**
+     * Costs of other parameters do not match the speculated tree, so the turn
+     * rebuilds it.
+     */
+    @Test
+    public void savesNothingWhenTurnRebuildsTree() {
+        TreeSpeculator speculator = new TreeSpeculator();
+        AdvancedGameState second = speculateStay(speculator);
+        BotParameters other = BotParameters.DEFAULTS.with(BotParameters.Parameter.SPAWN_POINT_COST,
+                BotParameters.Parameter.SPAWN_POINT_COST.getDefault() + 10);
+        new Pathfinder(second, speculator.claim(second), other).getClosestMine();
+        speculator.shutdown();
+
+        assertEquals(1, speculator.getHits());
+        assertEquals(0, speculator.getKeptHits());
+        assertEquals(0, speculator.getSavedNanos());
+    }
+
+    @Test
+    public void savesNothingWhenTurnDoesNotSearch() {
+        TreeSpeculator speculator = new TreeSpeculator();
+        AdvancedGameState second = speculateStay(speculator);
+        speculator.claim(second);
+        speculator.shutdown();
+
+        assertEquals(1, speculator.getHits());
+        assertEquals(0, speculator.getKeptHits());
+        assertEquals(0, speculator.getSavedNanos());
+    }
+
+    /**
+     * Speculate that I stay, and make the next turn the same state so that
+     * the guess is right.
+     *
+     * @return State of the next turn.
+     */
+    private static AdvancedGameState speculateStay(TreeSpeculator speculator) {
+        GameState state = TestGames.randomGame(18, 5, 1).get(0);
+        AdvancedGameState first = new AdvancedGameState(state);
+        speculator.speculate(first, BotMove.STAY);
+        return new AdvancedGameState(first, state);
+    }
+}